@@ -0,0 +1,147 @@
+package app;
+
+import engine.board.Board;
+import engine.common.SliderAttacks;
+import engine.eval.ClassicalEvaluator;
+import engine.eval.EvalCache;
+import engine.perft.Perft;
+import engine.search.Search;
+import engine.search.TranspositionTable;
+
+/**
+ * Fixed-position throughput benchmark.
+ *
+ * Run once per slider backend to compare them, e.g.
+ *   java -Dchess.sliders=magic -cp build/classes/java/main app.Bench
+ *   java -Dchess.sliders=pext  -cp build/classes/java/main app.Bench
+ *
+ * and with -Dchess.attackMaps=true to measure incrementally maintained attack maps.
+ */
+public final class Bench {
+
+  static final String[] FENS = {
+      "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+      "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+      "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+      "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+      "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+  };
+
+  private static final int PERFT_DEPTH = 4;
+  private static final int EVAL_ITERATIONS = 2_000_000;
+  private static final long SEARCH_MS = 2_000;
+  private static final int FEN_ITERATIONS = 2_000_000;
+
+  // pawn hash table usage of all search threads during searchNps
+  private static long pawnProbes;
+  private static long pawnHits;
+
+  // eval cache usage of all search threads during searchNps
+  private static long evalCacheProbes;
+  private static long evalCacheHits;
+
+  public static void main(String[] args) {
+    System.out.println("slider backend: " + SliderAttacks.BACKEND);
+    System.out.println("attack maps:    " + new Board().hasAttackMaps());
+
+    // warm-up so the JIT has compiled the hot paths before we measure
+    perftNps(3);
+    evalNps(EVAL_ITERATIONS / 10);
+    fenParseRate(FEN_ITERATIONS / 10);
+    fenWriteRate(FEN_ITERATIONS / 10);
+
+    System.out.printf("perft  nps: %,.0f%n", perftNps(PERFT_DEPTH));
+    System.out.printf("eval   nps: %,.0f%n", evalNps(EVAL_ITERATIONS));
+    ClassicalEvaluator.resetLazyStats();
+    System.out.printf("search nps: %,.0f%n", searchNps(SEARCH_MS));
+    System.out.printf("lazy eval exits: %.1f%% of %,d calls%n",
+        100.0 * ClassicalEvaluator.lazyExits() / Math.max(1, ClassicalEvaluator.lazyCalls()), ClassicalEvaluator.lazyCalls());
+    System.out.printf("pawn hash hits: %.1f%% of %,d probes%n", 100.0 * pawnHits / Math.max(1, pawnProbes), pawnProbes);
+    System.out.printf("eval cache hits: %.1f%% of %,d probes%n", 100.0 * evalCacheHits / Math.max(1, evalCacheProbes), evalCacheProbes);
+    System.out.printf("fen parse/s: %,.0f%n", fenParseRate(FEN_ITERATIONS));
+    System.out.printf("fen write/s: %,.0f%n", fenWriteRate(FEN_ITERATIONS));
+  }
+
+  private static double perftNps(int depth) {
+    long nodes = 0;
+    long start = System.nanoTime();
+    for (String fen : FENS) {
+      Board b = new Board();
+      b.loadFEN(fen);
+      nodes += Perft.perft(b, depth);
+    }
+    return nodes * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static double evalNps(int iterations) {
+    Board[] boards = new Board[FENS.length];
+    for (int i = 0; i < FENS.length; i++) {
+      boards[i] = new Board();
+      boards[i].loadFEN(FENS[i]);
+    }
+
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      sink += ClassicalEvaluator.evaluate(boards[i % boards.length]);
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) System.out.println();
+    return iterations * 1e9 / elapsed;
+  }
+
+  /** FENs loaded per second into one reused board. */
+  private static double fenParseRate(int iterations) {
+    Board b = new Board();
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      b.loadFEN(FENS[i % FENS.length]);
+      sink += b.zobristKey;
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) System.out.println();
+    return iterations * 1e9 / elapsed;
+  }
+
+  /** FENs written per second into one reused builder. */
+  private static double fenWriteRate(int iterations) {
+    Board[] boards = new Board[FENS.length];
+    for (int i = 0; i < FENS.length; i++) {
+      boards[i] = new Board();
+      boards[i].loadFEN(FENS[i]);
+    }
+
+    StringBuilder sb = new StringBuilder(128);
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      sb.setLength(0);
+      sink += boards[i % boards.length].toFEN(sb).length();
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) System.out.println();
+    return iterations * 1e9 / elapsed;
+  }
+
+  private static double searchNps(long msPerPosition) {
+    long startNodes = Search.GLOBAL_NODES.get();
+    long start = System.nanoTime();
+    for (String fen : FENS) {
+      Board b = new Board();
+      b.loadFEN(fen);
+      EvalCache evalCache = EvalCache.DEFAULT_SIZE_MB > 0 ? new EvalCache(EvalCache.DEFAULT_SIZE_MB) : null;
+      Search search = new Search(new TranspositionTable(64), evalCache);
+      search.search(b, msPerPosition);
+      pawnProbes += search.pawnProbes();
+      pawnHits += search.pawnHits();
+      if (evalCache != null) {
+        evalCacheProbes += evalCache.probes();
+        evalCacheHits += evalCache.hits();
+      }
+    }
+    long nodes = Search.GLOBAL_NODES.get() - startNodes;
+    return nodes * 1e9 / (System.nanoTime() - start);
+  }
+}
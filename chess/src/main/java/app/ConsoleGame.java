@@ -1,7 +1,6 @@
 package app;
 
 import engine.board.Board;
-import engine.move.AttackGenerator;
 import engine.move.Move;
 import engine.move.MoveGenerator;
 import engine.search.Search;
@@ -74,23 +73,7 @@ public final class ConsoleGame {
 
   private static boolean checkGameOver(Board board) {
     int[] moves = new int[256];
-    int moveCount = MoveGenerator.generateAllMoves(board, moves);
-
-    for (int i = 0; i < moveCount; i++) {
-      board.makeMove(moves[i]);
-
-      int mover = board.sideToMove ^ 1;
-      int kingSq = mover == Constants.WHITE
-          ? board.whiteKingSq
-          : board.blackKingSq;
-
-      boolean legal = !AttackGenerator.isSquareAttacked(
-          board, kingSq, board.sideToMove
-      );
-
-      board.unmakeMove();
-      if (legal) return false;
-    }
+    if (MoveGenerator.generateLegalMoves(board, moves) > 0) return false;
 
     if (board.isInCheck()) {
       System.out.println("Checkmate. " +
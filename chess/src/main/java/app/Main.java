@@ -1,6 +1,11 @@
 package app;
 
 import engine.board.Board;
+import engine.book.PolyglotBook;
+import engine.eval.ClassicalEvaluator;
+import engine.eval.Evaluator;
+import engine.eval.NnueEvaluator;
+import engine.eval.NnueNetwork;
 
 import engine.move.Move;
 import engine.move.MoveGenerator;
@@ -8,10 +13,20 @@ import engine.search.Search;
 import engine.search.TranspositionTable;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main {
-    public static void main(String[] args) {
-        MainGameLoop mgl = new MainGameLoop(new Search(new TranspositionTable(1024)), 60000,60000,5000,5000);
+    public static void main(String[] args) throws IOException {
+        // -Dchess.book=<file.bin> plays from a Polyglot opening book
+        String bookPath = System.getProperty("chess.book");
+        PolyglotBook book = bookPath != null ? PolyglotBook.open(Path.of(bookPath)) : null;
+
+        // -Dchess.nnue=<file> evaluates with an NNUE network instead of the classical evaluation
+        Evaluator.Factory evaluators = NnueNetwork.DEFAULT_FILE != null
+            ? NnueEvaluator.factory(NnueNetwork.load(Path.of(NnueNetwork.DEFAULT_FILE)))
+            : ClassicalEvaluator.factory();
+
+        MainGameLoop mgl = new MainGameLoop(new Search(new TranspositionTable(1024), evaluators), book, 60000,60000,5000,5000);
         Board b = new Board();
         b.loadFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
         mgl.play(b,true);
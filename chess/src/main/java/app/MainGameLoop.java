@@ -1,6 +1,7 @@
 package app;
 
 import engine.board.Board;
+import engine.book.PolyglotBook;
 import engine.common.Constants;
 import engine.move.AttackGenerator;
 import engine.move.Move;
@@ -13,6 +14,7 @@ import java.util.Scanner;
 public final class MainGameLoop {
 
   private final Search search;
+  private final PolyglotBook book; // may be null
   private final Scanner in = new Scanner(System.in);
 
   // clocks (ms)
@@ -33,7 +35,17 @@ public final class MainGameLoop {
       long blackTimeMs,
       long whiteIncMs,
       long blackIncMs) {
+    this(search, null, whiteTimeMs, blackTimeMs, whiteIncMs, blackIncMs);
+  }
+
+  public MainGameLoop(Search search,
+      PolyglotBook book,
+      long whiteTimeMs,
+      long blackTimeMs,
+      long whiteIncMs,
+      long blackIncMs) {
     this.search = search;
+    this.book = book;
     this.whiteTimeMs = whiteTimeMs;
     this.blackTimeMs = blackTimeMs;
     this.whiteIncMs = whiteIncMs;
@@ -49,6 +61,10 @@ public final class MainGameLoop {
         System.out.println("Draw by 50-move rule");
         break;
       }
+      if (board.isThreefoldRepetition()) {
+        System.out.println("Draw by repetition");
+        break;
+      }
 
       int legalCount = countLegalMoves(board);
       if (legalCount == 0) {
@@ -92,6 +108,17 @@ public final class MainGameLoop {
         break;
       }
 
+      // book moves are instant: the clock only gains the increment
+      int bookMove = book != null ? book.probe(board) : 0;
+      if (bookMove != 0) {
+        if (whiteToMove) whiteTimeMs += whiteIncMs;
+        else blackTimeMs += blackIncMs;
+
+        System.out.println("Engine plays: " + Move.toUCI(bookMove) + " (book)");
+        board.makeMove(bookMove);
+        continue;
+      }
+
       long timeForMoveMs = TimeManager.computeTimeForMoveMs(
           board,
           remainingMs,
@@ -134,47 +161,20 @@ public final class MainGameLoop {
       promo = promoFromChar(board,uci.charAt(4));
     }
 
-    int count = MoveGenerator.generateAllMoves(board, moves);
-    int us = board.sideToMove;
-    int kingSq = (us == Constants.WHITE) ? board.whiteKingSq : board.blackKingSq;
+    int count = MoveGenerator.generateLegalMoves(board, moves);
 
     for (int i = 0; i < count; i++) {
       int m = moves[i];
       if (Move.from(m) == from && Move.to(m) == to) {
         if (promo != 0 && Move.promo(m) != promo) continue;
-
-        board.makeMove(m);
-        boolean illegal = AttackGenerator.isSquareAttacked(
-            board,
-            kingSq,
-            board.sideToMove
-        );
-        board.unmakeMove();
-
-        if (!illegal) return m;
+        return m;
       }
     }
     return 0;
   }
 
   private int countLegalMoves(Board board) {
-    int count = MoveGenerator.generateAllMoves(board, moves);
-    int legal = 0;
-
-    int us = board.sideToMove;
-    int kingSq = (us == Constants.WHITE) ? board.whiteKingSq : board.blackKingSq;
-
-    for (int i = 0; i < count; i++) {
-      board.makeMove(moves[i]);
-      boolean illegal = AttackGenerator.isSquareAttacked(
-          board,
-          kingSq,
-          board.sideToMove
-      );
-      board.unmakeMove();
-      if (!illegal) legal++;
-    }
-    return legal;
+    return MoveGenerator.generateLegalMoves(board, moves);
   }
 
   private boolean isSideToMoveInCheck(Board board) {
@@ -0,0 +1,149 @@
+package app;
+
+import engine.board.Board;
+import engine.eval.ClassicalEvaluator;
+import engine.eval.NnueAccumulator;
+import engine.eval.NnueEvaluator;
+import engine.eval.NnueNetwork;
+import engine.move.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * NNUE evaluator benchmark against {@link ClassicalEvaluator} on the {@link Bench} positions.
+ *
+ * Both evaluators score every node of a fixed-depth tree below each position, so the NNUE figure
+ * includes its incremental accumulator updates in make / unmake. Reports evaluations per second
+ * for each, how closely the NNUE scores track the classical ones, and checks incremental against
+ * freshly built accumulators. Exits with status 1 when NNUE falls below -Dchess.nnueTargetNps
+ * (default 1,000,000) or an accumulator mismatches:
+ *   java --add-modules jdk.incubator.vector -cp build/classes/java/main app.NnueBench net.nnue
+ */
+public final class NnueBench {
+
+  private static final int TREE_DEPTH = 3;
+  private static final int ROUNDS = 5;
+  private static final long TARGET_NPS = Long.getLong("chess.nnueTargetNps", 1_000_000L);
+
+  private static final int[][] MOVES = new int[TREE_DEPTH][256];
+
+  private static long sink;
+
+  public static void main(String[] args) throws IOException {
+    String file = args.length > 0 ? args[0] : NnueNetwork.DEFAULT_FILE;
+    if (file == null) {
+      System.err.println("usage: NnueBench <network file>  (or -Dchess.nnue=<file>)");
+      System.exit(2);
+    }
+    NnueNetwork net = NnueNetwork.load(Path.of(file));
+    System.out.println("hidden size: " + net.hidden + ", simd: " + NnueAccumulator.SIMD);
+
+    // warm-up so the JIT has compiled the hot paths before we measure
+    evalNps(null, 1);
+    evalNps(net, 1);
+
+    double classical = evalNps(null, ROUNDS);
+    double nnue = evalNps(net, ROUNDS);
+    System.out.printf("classical eval nps: %,.0f%n", classical);
+    System.out.printf("nnue      eval nps: %,.0f (%.2fx)%n", nnue, nnue / classical);
+
+    boolean ok = accuracy(net);
+
+    if (nnue < TARGET_NPS) {
+      System.out.printf("FAIL: nnue eval nps below target %,d%n", TARGET_NPS);
+      ok = false;
+    }
+    if (!ok) System.exit(1);
+    System.out.println("OK");
+  }
+
+  /** Nodes evaluated per second over the trees below all positions; net null for classical. */
+  private static double evalNps(NnueNetwork net, int rounds) {
+    long nodes = 0;
+    long start = System.nanoTime();
+    for (int r = 0; r < rounds; r++) {
+      for (String fen : Bench.FENS) {
+        Board b = new Board();
+        b.setNnue(net);
+        b.loadFEN(fen);
+        nodes += walk(b, TREE_DEPTH, net != null);
+      }
+    }
+    return nodes * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static long walk(Board b, int depth, boolean nnue) {
+    sink += nnue ? NnueEvaluator.evaluate(b) : ClassicalEvaluator.evaluate(b);
+    if (depth == 0) return 1;
+
+    int[] moves = MOVES[depth - 1];
+    int count = MoveGenerator.generateLegalMoves(b, moves);
+    long nodes = 1;
+    for (int i = 0; i < count; i++) {
+      b.makeMove(moves[i]);
+      nodes += walk(b, depth - 1, nnue);
+      b.unmakeMove();
+    }
+    return nodes;
+  }
+
+  /**
+   * Compares NNUE with classical scores over the tree nodes, and incremental accumulators with
+   * ones rebuilt from scratch. Returns false on any accumulator mismatch.
+   */
+  private static boolean accuracy(NnueNetwork net) {
+    Stats s = new Stats();
+    Board fresh = new Board();
+    fresh.setNnue(net);
+    for (String fen : Bench.FENS) {
+      Board b = new Board();
+      b.setNnue(net);
+      b.loadFEN(fen);
+      compare(b, fresh, TREE_DEPTH, s);
+    }
+
+    double n = s.n;
+    double cov = s.sxy / n - (s.sx / n) * (s.sy / n);
+    double vx = s.sxx / n - (s.sx / n) * (s.sx / n);
+    double vy = s.syy / n - (s.sy / n) * (s.sy / n);
+    System.out.printf("positions: %,d%n", s.n);
+    System.out.printf("mean |nnue - classical|: %.1f cp%n", s.absDiff / n);
+    System.out.printf("correlation: %.3f%n", vx > 0 && vy > 0 ? cov / Math.sqrt(vx * vy) : 0.0);
+    System.out.printf("same sign: %.1f%%%n", 100.0 * s.sameSign / n);
+    System.out.printf("accumulator mismatches: %,d%n", s.mismatches);
+    return s.mismatches == 0;
+  }
+
+  private static void compare(Board b, Board fresh, int depth, Stats s) {
+    int nnue = NnueEvaluator.evaluate(b);
+    int classical = ClassicalEvaluator.evaluate(b);
+
+    fresh.forkFrom(b);
+    fresh.nnue().invalidate(); // rebuilt from the pieces on the next evaluation
+    if (NnueEvaluator.evaluate(fresh) != nnue) s.mismatches++;
+
+    s.n++;
+    s.sx += classical;
+    s.sy += nnue;
+    s.sxx += (double) classical * classical;
+    s.syy += (double) nnue * nnue;
+    s.sxy += (double) classical * nnue;
+    s.absDiff += Math.abs(nnue - classical);
+    if (Integer.signum(nnue) == Integer.signum(classical)) s.sameSign++;
+
+    if (depth == 0) return;
+    int[] moves = MOVES[depth - 1];
+    int count = MoveGenerator.generateLegalMoves(b, moves);
+    for (int i = 0; i < count; i++) {
+      b.makeMove(moves[i]);
+      compare(b, fresh, depth - 1, s);
+      b.unmakeMove();
+    }
+  }
+
+  private static final class Stats {
+    long n, sameSign, mismatches;
+    double sx, sy, sxx, syy, sxy, absDiff;
+  }
+}
@@ -1,6 +1,7 @@
 package app;
 
 import engine.board.Board;
+import engine.book.PolyglotBook;
 import engine.common.Constants;
 import engine.move.AttackGenerator;
 import engine.move.MoveGenerator;
@@ -10,6 +11,7 @@ import engine.search.TimeManager;
 public final class SelfGameLoop {
 
   private final Search search;
+  private final PolyglotBook book; // may be null
 
   // Clock in ms
   private long whiteTimeMs;
@@ -29,19 +31,30 @@ public final class SelfGameLoop {
       long blackTimeMs,
       long whiteIncMs,
       long blackIncMs) {
+    this(search, null, whiteTimeMs, blackTimeMs, whiteIncMs, blackIncMs);
+  }
+
+  public SelfGameLoop(Search search,
+      PolyglotBook book,
+      long whiteTimeMs,
+      long blackTimeMs,
+      long whiteIncMs,
+      long blackIncMs) {
     this.search = search;
+    this.book = book;
     this.whiteTimeMs = whiteTimeMs;
     this.blackTimeMs = blackTimeMs;
     this.whiteIncMs = whiteIncMs;
     this.blackIncMs = blackIncMs;
   }
 
-  /** Plays until game end by "no legal moves" or 50-move rule. */
+  /** Plays until game end by "no legal moves", threefold repetition or 50-move rule. */
   public void play(Board board) {
 
     while (true) {
       // 1) Game end checks (your rules)
       if (board.halfmoveClock >= 100) break; // draw by 50-move rule (100 plies)
+      if (board.isThreefoldRepetition()) break;
 
       int legalMoves = countLegalMoves(board);
       if (legalMoves == 0) {
@@ -59,6 +72,15 @@ public final class SelfGameLoop {
         break;
       }
 
+      // Book moves are instant: the clock only gains the increment
+      int bookMove = book != null ? book.probe(board) : 0;
+      if (bookMove != 0) {
+        if (whiteToMove) whiteTimeMs += whiteIncMs;
+        else blackTimeMs += blackIncMs;
+        board.makeMove(bookMove);
+        continue;
+      }
+
       // 3) Compute time FOR THIS MOVE (once)
       int fullmoveNumber = getFullmoveNumber(board); // if you don't have it, see helper below
       long timeForMoveMs = TimeManager.computeTimeForMoveMs(
@@ -91,26 +113,9 @@ public final class SelfGameLoop {
     }
   }
 
-  /** Counts legal moves by generating pseudo-legal and filtering king-in-check moves. */
+  /** Counts legal moves straight from the legal generator. */
   private int countLegalMoves(Board board) {
-    int count = MoveGenerator.generateAllMoves(board, tmpMoves);
-    int legal = 0;
-
-    int us = board.sideToMove;
-    int ourKingSq = (us == Constants.WHITE) ? board.whiteKingSq : board.blackKingSq;
-
-    for (int i = 0; i < count; i++) {
-      int move = tmpMoves[i];
-      board.makeMove(move);
-
-      // after makeMove, sideToMove flipped; attacker side is new sideToMove
-      boolean illegal = AttackGenerator.isSquareAttacked(board, ourKingSq, board.sideToMove);
-
-      board.unmakeMove();
-      if (!illegal) legal++;
-    }
-
-    return legal;
+    return MoveGenerator.generateLegalMoves(board, tmpMoves);
   }
 
   /** True if side to move is currently in check (reliable). */
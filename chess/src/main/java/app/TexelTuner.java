@@ -0,0 +1,260 @@
+package app;
+
+import engine.board.Board;
+import engine.board.PackedPosition;
+import engine.eval.ClassicalEvaluator;
+import engine.eval.EvalParams;
+import engine.eval.EvalTrace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Texel-style tuner for the {@link EvalParams} weights of the classical evaluation: minimizes the
+ * mean squared error between game results and sigmoid(K * eval) over a set of labeled positions
+ * (see {@link TuningPositions}), starting from the active weights (the defaults, or the file
+ * given with -Dchess.evalParams).
+ *
+ * Every epoch evaluates all positions in parallel on every core. The evaluation is traced
+ * ({@link ClassicalEvaluator#trace}) rather than just scored, which gives the exact gradient of
+ * the error in the same pass, so each epoch is one Adam step over all weights instead of the
+ * two evaluations per weight of a local search. K is fitted once to the starting weights.
+ *
+ *   java -cp build/classes/java/main app.TexelTuner positions.epd tuned.txt
+ *
+ * -Dchess.tuneEpochs (default 300) and -Dchess.tuneRate (default 1.0, in centipawns per step)
+ * control the descent. The weights are saved every 10 epochs and at the end; use them with
+ * -Dchess.evalParams=tuned.txt.
+ */
+public final class TexelTuner {
+
+  private static final int EPOCHS = Integer.getInteger("chess.tuneEpochs", 300);
+  private static final double RATE = Double.parseDouble(System.getProperty("chess.tuneRate", "1.0"));
+  private static final int SAVE_EVERY = 10;
+
+  private static final double BETA1 = 0.9;
+  private static final double BETA2 = 0.999;
+  private static final double EPSILON = 1e-8;
+
+  private static final double[] TARGET = {0.0, 0.5, 1.0};
+
+  private final TuningPositions positions;
+  private final ExecutorService pool;
+  private final int threads;
+
+  private TexelTuner(TuningPositions positions, ExecutorService pool, int threads) {
+    this.positions = positions;
+    this.pool = pool;
+    this.threads = threads;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: TexelTuner <positions file> <output params file>");
+      System.exit(2);
+    }
+    Path out = Path.of(args[1]);
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "tuner");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    long start = System.nanoTime();
+    TuningPositions positions = TuningPositions.load(Path.of(args[0]), pool, threads);
+    System.out.printf("loaded %,d positions (%,d skipped) in %.1fs on %d threads%n",
+        positions.positions, positions.skipped, (System.nanoTime() - start) / 1e9, threads);
+    if (positions.positions == 0) System.exit(1);
+
+    new TexelTuner(positions, pool, threads).run(out);
+  }
+
+  private void run(Path out) throws IOException {
+    int[] current = EvalParams.current();
+    double[] w = new double[EvalParams.SIZE];
+    for (int i = 0; i < w.length; i++) w[i] = current[i];
+
+    long start = System.nanoTime();
+    float[] scores = scores(w);
+    double k = fitK(scores);
+    System.out.printf("K = %.4f, error %.6f%n", k, error(scores, k));
+
+    double[] m = new double[w.length];
+    double[] v = new double[w.length];
+    double[] grad = new double[w.length];
+
+    for (int epoch = 1; epoch <= EPOCHS; epoch++) {
+      // the traces read the active weights only for the scale factor's side
+      EvalParams.set(round(w));
+
+      double err = gradient(w, k, grad);
+
+      for (int i = 0; i < w.length; i++) {
+        m[i] = BETA1 * m[i] + (1 - BETA1) * grad[i];
+        v[i] = BETA2 * v[i] + (1 - BETA2) * grad[i] * grad[i];
+        double mHat = m[i] / (1 - Math.pow(BETA1, epoch));
+        double vHat = v[i] / (1 - Math.pow(BETA2, epoch));
+        w[i] -= RATE * mHat / (Math.sqrt(vHat) + EPSILON);
+      }
+
+      System.out.printf("epoch %d: error %.6f (%.1fs)%n", epoch, err, (System.nanoTime() - start) / 1e9);
+      if (epoch % SAVE_EVERY == 0 || epoch == EPOCHS) EvalParams.save(round(w), out);
+    }
+  }
+
+  private static int[] round(double[] w) {
+    int[] r = new int[w.length];
+    for (int i = 0; i < w.length; i++) r[i] = (int) Math.round(w[i]);
+    return r;
+  }
+
+  private static double sigmoid(double score, double k) {
+    return 1.0 / (1.0 + Math.pow(10.0, -k * score / 400.0));
+  }
+
+  /** Traced white-minus-black score of every position for the weights {@code w}, in block order. */
+  private float[] scores(double[] w) throws IOException {
+    float[] scores = new float[Math.toIntExact(positions.positions)];
+    int[] offsets = new int[positions.blocks.size()];
+    for (int i = 1; i < offsets.length; i++) offsets[i] = offsets[i - 1] + positions.blocks.get(i - 1).size;
+
+    forEachBlock((block, index, board, trace) -> {
+      ByteBuffer buf = ByteBuffer.wrap(block.packed);
+      for (int j = 0; j < block.size; j++) {
+        PackedPosition.decode(buf, board);
+        ClassicalEvaluator.trace(board, trace);
+        scores[offsets[index] + j] = (float) trace.score(w);
+      }
+    });
+    return scores;
+  }
+
+  /** K minimizing the error of {@code scores}, by golden-section search. */
+  private double fitK(float[] scores) {
+    double lo = 0.01, hi = 5.0;
+    double g = (Math.sqrt(5) - 1) / 2;
+    double a = hi - g * (hi - lo), b = lo + g * (hi - lo);
+    double ea = error(scores, a), eb = error(scores, b);
+    for (int i = 0; i < 40; i++) {
+      if (ea < eb) {
+        hi = b; b = a; eb = ea;
+        a = hi - g * (hi - lo); ea = error(scores, a);
+      } else {
+        lo = a; a = b; ea = eb;
+        b = lo + g * (hi - lo); eb = error(scores, b);
+      }
+    }
+    return (lo + hi) / 2;
+  }
+
+  private double error(float[] scores, double k) {
+    double sum = 0;
+    int i = 0;
+    for (TuningPositions.Block block : positions.blocks) {
+      for (int j = 0; j < block.size; j++, i++) {
+        double d = TARGET[block.results[j]] - sigmoid(scores[i], k);
+        sum += d * d;
+      }
+    }
+    return sum / positions.positions;
+  }
+
+  /** Fills {@code grad} with the gradient of the error at {@code w} and returns the error. */
+  private double gradient(double[] w, double k, double[] grad) throws IOException {
+    double dSigma = k * Math.log(10) / 400.0;
+
+    List<double[]> partials = gradientSums(w, k, dSigma);
+
+    Arrays.fill(grad, 0);
+    double err = 0;
+    for (double[] p : partials) {
+      for (int i = 0; i < grad.length; i++) grad[i] += p[i];
+      err += p[grad.length];
+    }
+    double n = positions.positions;
+    for (int i = 0; i < grad.length; i++) grad[i] /= n;
+    return err / n;
+  }
+
+  @FunctionalInterface
+  private interface BlockTask {
+    void apply(TuningPositions.Block block, int index, Board board, EvalTrace trace);
+  }
+
+  /**
+   * Unnormalized gradient of the error, one array per thread: each thread takes blocks until none
+   * are left and returns its gradient sums followed by its error sum at index SIZE.
+   */
+  private List<double[]> gradientSums(double[] w, double k, double dSigma) throws IOException {
+    AtomicInteger next = new AtomicInteger();
+    List<Callable<double[]>> tasks = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      tasks.add(() -> {
+        Board board = new Board();
+        EvalTrace trace = new EvalTrace();
+        double[] sums = new double[EvalParams.SIZE + 1];
+
+        for (int b; (b = next.getAndIncrement()) < positions.blocks.size(); ) {
+          TuningPositions.Block block = positions.blocks.get(b);
+          ByteBuffer buf = ByteBuffer.wrap(block.packed);
+          for (int j = 0; j < block.size; j++) {
+            PackedPosition.decode(buf, board);
+            ClassicalEvaluator.trace(board, trace);
+
+            double s = sigmoid(trace.score(w), k);
+            double d = TARGET[block.results[j]] - s;
+            sums[EvalParams.SIZE] += d * d;
+
+            // d(error)/d(w_i) = -2 * d * s * (1 - s) * dSigma * scale * coef_i
+            double f = -2 * d * s * (1 - s) * dSigma * trace.scale;
+            for (int e = 0; e < trace.size(); e++) sums[trace.param(e)] += f * trace.coef(e);
+          }
+        }
+        return sums;
+      });
+    }
+    return invokeAll(tasks);
+  }
+
+  /** Runs {@code task} on every block, spread over the threads. */
+  private void forEachBlock(BlockTask task) throws IOException {
+    AtomicInteger next = new AtomicInteger();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      tasks.add(() -> {
+        Board board = new Board();
+        EvalTrace trace = new EvalTrace();
+        for (int b; (b = next.getAndIncrement()) < positions.blocks.size(); ) {
+          task.apply(positions.blocks.get(b), b, board, trace);
+        }
+        return null;
+      });
+    }
+    invokeAll(tasks);
+  }
+
+  private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+    try {
+      List<T> results = new ArrayList<>();
+      for (Future<T> f : pool.invokeAll(tasks)) results.add(f.get());
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Tuning pass failed", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package app;
+
+import engine.board.Board;
+import engine.board.PackedPosition;
+import engine.common.Constants;
+import engine.eval.ClassicalEvaluator;
+import engine.move.AttackGenerator;
+import engine.move.SEE;
+import engine.search.MovePicker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Labeled training positions for {@link TexelTuner}, read from a text file with one position per
+ * line: a FEN (or EPD) followed by the game result as {@code 1-0}, {@code 0-1}, {@code 1/2-1/2},
+ * {@code 1.0}, {@code 0.5} or {@code 0.0}, optionally bracketed, quoted or after an EPD opcode,
+ * e.g. {@code <fen> [0.5]} or {@code <fen> c9 "1-0";}.
+ *
+ * The file is memory-mapped and its line-aligned ranges parsed in parallel. Each position is
+ * replaced by the leaf of its quiescence search principal variation, so that the tuner only
+ * sees quiet positions, and stored as a {@link PackedPosition} in blocks of {@link #BLOCK_SIZE}.
+ * Lines that do not parse, positions that cannot be searched (a side without exactly one king,
+ * more than 32 pieces, a pawn on a back rank, the side not to move in check) and leaves still in
+ * check are skipped.
+ */
+final class TuningPositions {
+
+  static final int BLOCK_SIZE = 1 << 16;
+
+  // ranges are mapped one at a time, so each stays well below the 2 GB mapping limit
+  private static final long MAX_RANGE_BYTES = 256L << 20;
+
+  /** Up to BLOCK_SIZE packed positions and their results: 0 black win, 1 draw, 2 white win. */
+  static final class Block {
+    final byte[] packed = new byte[BLOCK_SIZE * PackedPosition.BYTES];
+    final byte[] results = new byte[BLOCK_SIZE];
+    int size;
+  }
+
+  final List<Block> blocks = new ArrayList<>();
+  long positions;
+  long skipped;
+
+  static TuningPositions load(Path file, ExecutorService pool, int threads) throws IOException {
+    TuningPositions set = new TuningPositions();
+    AtomicLong skipped = new AtomicLong();
+
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      int ranges = (int) Math.max(4L * threads, (size + MAX_RANGE_BYTES - 1) / MAX_RANGE_BYTES);
+
+      long[] starts = new long[ranges + 1];
+      for (int i = 1; i < ranges; i++) starts[i] = nextLineStart(ch, Math.max(starts[i - 1], size * i / ranges));
+      starts[ranges] = size;
+
+      List<Callable<List<Block>>> tasks = new ArrayList<>();
+      for (int i = 0; i < ranges; i++) {
+        long from = starts[i], to = starts[i + 1];
+        if (from < to) tasks.add(() -> new Parser(skipped).parse(ch.map(FileChannel.MapMode.READ_ONLY, from, to - from)));
+      }
+
+      for (Future<List<Block>> f : pool.invokeAll(tasks)) {
+        for (Block b : f.get()) {
+          set.blocks.add(b);
+          set.positions += b.size;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + file, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to load " + file, e.getCause());
+    }
+
+    set.skipped = skipped.get();
+    return set;
+  }
+
+  /** Offset just past the first newline at or after {@code pos}, or the file size. */
+  private static long nextLineStart(FileChannel ch, long pos) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(4096);
+    while (true) {
+      buf.clear();
+      int n = ch.read(buf, pos);
+      if (n <= 0) return ch.size();
+      for (int i = 0; i < n; i++) {
+        if (buf.get(i) == '\n') return pos + i + 1;
+      }
+      pos += n;
+    }
+  }
+
+  /** Parses one mapped range; owns a board and a quiescence search. */
+  private static final class Parser {
+    private static final int MAX_PLY = 32;
+    private static final int MATE = 30000;
+
+    private final AtomicLong skipped;
+    private final Board board = new Board();
+    private final byte[] line = new byte[1024];
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    Parser(AtomicLong skipped) {
+      this.skipped = skipped;
+      int[][][] history = new int[2][64][64];
+      for (int i = 0; i < MAX_PLY; i++) pickers[i] = new MovePicker(history);
+    }
+
+    List<Block> parse(MappedByteBuffer buf) {
+      List<Block> out = new ArrayList<>();
+      Block block = new Block();
+      ByteBuffer packed = ByteBuffer.wrap(block.packed);
+      out.add(block);
+
+      int len = 0;
+      boolean overlong = false;
+      int limit = buf.limit();
+      for (int i = 0; i <= limit; i++) {
+        byte c = i < limit ? buf.get(i) : (byte) '\n';
+        if (c != '\n') {
+          if (len < line.length) line[len++] = c;
+          else overlong = true;
+          continue;
+        }
+
+        if (len > 0) {
+          if (overlong || !addLine(len, block, packed)) skipped.incrementAndGet();
+          if (block.size == BLOCK_SIZE) {
+            block = new Block();
+            packed = ByteBuffer.wrap(block.packed);
+            out.add(block);
+          }
+        }
+        len = 0;
+        overlong = false;
+      }
+      return out;
+    }
+
+    private boolean addLine(int len, Block block, ByteBuffer packed) {
+      int end = len;
+      while (end > 0 && isTrailing(line[end - 1])) end--;
+
+      int result;
+      if (endsWith(end, "1/2-1/2")) { result = 1; end -= 7; }
+      else if (endsWith(end, "1-0") || endsWith(end, "1.0")) { result = 2; end -= 3; }
+      else if (endsWith(end, "0-1") || endsWith(end, "0.0")) { result = 0; end -= 3; }
+      else if (endsWith(end, "0.5")) { result = 1; end -= 3; }
+      else return false;
+
+      int fenEnd = fenEnd(end);
+      if (fenEnd == 0) return false;
+
+      try {
+        board.loadFEN(line, 0, fenEnd);
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
+
+      if (!isPlayable() || !toQuietLeaf()) return false;
+
+      PackedPosition.encode(board, packed);
+      block.results[block.size++] = (byte) result;
+      return true;
+    }
+
+    private static boolean isTrailing(byte c) {
+      return c == ' ' || c == '\t' || c == '\r' || c == ']' || c == '"' || c == ';';
+    }
+
+    private boolean endsWith(int end, String s) {
+      int n = s.length();
+      if (end < n) return false;
+      for (int i = 0; i < n; i++) {
+        if (line[end - n + i] != s.charAt(i)) return false;
+      }
+      return true;
+    }
+
+    /**
+     * End of the FEN within line[0, end): its four mandatory fields plus up to two numeric clock
+     * fields, stopping at anything else (a bracket, quote, separator or EPD opcode).
+     */
+    private int fenEnd(int end) {
+      int fields = 0, i = 0, fenEnd = 0;
+      while (i < end && fields < 6) {
+        while (i < end && line[i] == ' ') i++;
+        if (i == end) break;
+
+        int start = i;
+        while (i < end && line[i] != ' ' && line[i] != '[' && line[i] != '"' && line[i] != ';' && line[i] != '|' && line[i] != ',') i++;
+        if (i == start) break;
+
+        if (fields >= 4) {
+          for (int k = start; k < i; k++) {
+            if (line[k] < '0' || line[k] > '9') return fenEnd;
+          }
+        }
+        fields++;
+        fenEnd = i;
+      }
+      return fields >= 4 ? fenEnd : 0;
+    }
+
+    /**
+     * Whether the loaded position can be searched and packed: one king a side, at most 32
+     * pieces, no pawn on the first or last rank, and the side not to move not in check.
+     */
+    private boolean isPlayable() {
+      if (Long.bitCount(board.pieces[Constants.W_KING]) != 1 || Long.bitCount(board.pieces[Constants.B_KING]) != 1) return false;
+      if (Long.bitCount(board.allPieces) > 32) return false;
+      if (((board.pieces[Constants.W_PAWN] | board.pieces[Constants.B_PAWN]) & (Constants.RANK_1 | Constants.RANK_8)) != 0) return false;
+
+      int them = board.sideToMove ^ 1;
+      int king = Long.numberOfTrailingZeros(board.pieces[Constants.W_KING + them]);
+      return !AttackGenerator.isSquareAttacked(board, king, board.sideToMove);
+    }
+
+    /** Plays the quiescence principal variation out on the board; false if the leaf is in check. */
+    private boolean toQuietLeaf() {
+      quiescence(-Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+
+      int n = pvLength[0];
+      for (int i = 0; i < n; i++) board.makeMove(pv[0][i]);
+      return !board.isInCheck();
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+      pvLength[ply] = ply;
+
+      boolean inCheck = board.isInCheck();
+      if (ply == MAX_PLY) return ClassicalEvaluator.evaluate(board);
+
+      if (!inCheck) {
+        int standPat = ClassicalEvaluator.evaluate(board);
+        if (standPat >= beta) return standPat;
+        if (standPat > alpha) alpha = standPat;
+      }
+
+      MovePicker picker = pickers[ply];
+      if (inCheck) picker.initEvasions(board);
+      else picker.initQuiescence(board);
+
+      boolean hasLegalMove = false;
+      int move;
+      while ((move = picker.next()) != 0) {
+        hasLegalMove = true;
+        if (!inCheck && !SEE.seeGe(board, move, 0)) continue;
+
+        board.makeMove(move);
+        int score = -quiescence(-beta, -alpha, ply + 1);
+        board.unmakeMove();
+
+        if (score > alpha) {
+          alpha = score;
+          pv[ply][ply] = move;
+          System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+          pvLength[ply] = pvLength[ply + 1];
+          if (score >= beta) return score;
+        }
+      }
+
+      if (inCheck && !hasLegalMove) return -(MATE - ply);
+      return alpha;
+    }
+  }
+}
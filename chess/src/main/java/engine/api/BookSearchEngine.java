@@ -0,0 +1,35 @@
+package engine.api;
+
+import engine.board.Board;
+import engine.book.PolyglotBook;
+import engine.move.Move;
+import engine.search.Search;
+
+/**
+ * {@link ChessEngine} answering from an opening book when it can and searching for a fixed time
+ * otherwise. Returns the move in UCI notation, or "0000" when the position has no move.
+ */
+public final class BookSearchEngine implements ChessEngine {
+
+  private final Search search;
+  private final PolyglotBook book; // may be null
+  private final long moveTimeMs;
+
+  private final Board board = new Board();
+
+  public BookSearchEngine(Search search, PolyglotBook book, long moveTimeMs) {
+    this.search = search;
+    this.book = book;
+    this.moveTimeMs = moveTimeMs;
+  }
+
+  @Override
+  public String getBestMove(String fen) {
+    board.loadFEN(fen);
+
+    int move = book != null ? book.probe(board) : 0;
+    if (move == 0) move = search.search(board, moveTimeMs);
+
+    return move != 0 ? Move.toUCI(move) : "0000";
+  }
+}
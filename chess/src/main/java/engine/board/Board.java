@@ -3,14 +3,22 @@ package engine.board;
 
 import engine.move.AttackGenerator;
 import engine.move.Move;
+import engine.common.BitHelper;
 import engine.common.Constants;
+import engine.common.SliderAttacks;
+import engine.eval.NnueAccumulator;
+import engine.eval.NnueNetwork;
+import engine.eval.PieceSquareTables;
 
-public class Board implements CloneableBoard {
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
-    public long whitePawns, whiteKnights, whiteBishops, whiteRooks, whiteQueens, whiteKing;
-    public long blackPawns, blackKnights, blackBishops, blackRooks, blackQueens, blackKing;
+public class Board implements CloneableBoard {
 
-    public long whitePieces, blackPieces, allPieces;
+    // Bitboard per piece id (Constants.W_PAWN..B_KING) and per color
+    public final long[] pieces = new long[12];
+    public final long[] occupancy = new long[2];
+    public long allPieces;
     public int sideToMove;
 
     public int castlingRights;
@@ -18,15 +26,35 @@ public class Board implements CloneableBoard {
     public int halfmoveClock;
     public int fullmoveNumber;
 
+    // Largest halfmove clock a FEN may set: the undo word keeps the clock in 13 bits
+    public static final int MAX_HALFMOVE_CLOCK = (1 << 13) - 1;
+
     public long zobristKey;
 
+    // Zobrist key of the pawns alone, for the evaluator's pawn hash table
+    public long pawnKey;
+
     public int whiteKingSq = -1;
     public int blackKingSq = -1;
 
     public int whiteNonPawnMaterial;
     public int blackNonPawnMaterial;
 
+    // Piece count per piece id, and the material key they index (see Constants.MATERIAL_KEY_STRIDE).
+    // materialOverflow counts pieces beyond the key's range; the key is only meaningful while it is 0.
+    public final int[] pieceCount = new int[12];
+    public int materialKey;
+    public int materialOverflow;
+
+    // Running midgame/endgame piece-square sums, white minus black (see PieceSquareTables)
+    public int psqMg;
+    public int psqEg;
 
+    // Debug aid: -Dchess.validate=true re-derives all incremental state after every make/unmake
+    private static final boolean VALIDATE = Boolean.getBoolean("chess.validate");
+
+
+    // Keys of the positions before each made move; grows on demand
     public long[] keyHistory = new long[256];
     public int historyPly = 0;
 
@@ -35,23 +63,67 @@ public class Board implements CloneableBoard {
 
 
     private final int[] pieceAt = new int[64];
-    private final Undo[] undoStack = new Undo[2048];
+
+    // FEN letter per piece id
+    private static final String PIECE_CHARS = "PpNnBbRrQqKk";
+
+    /*
+     * Undo stack as parallel arrays, one slot per made move. undoInfo packs what the move
+     * overwrites: moving piece (bits 0-3), captured piece + 1 (4-7), castling rights (8-11),
+     * en passant square + 1 (12-18) and halfmove clock (19-31). The fullmove number is
+     * re-derived on unmake.
+     */
+    private static final int MAX_UNDO = 2048;
+
+    private final int[] undoMove = new int[MAX_UNDO];
+    private final int[] undoInfo = new int[MAX_UNDO];
+    private final int[] undoIrreversiblePly = new int[MAX_UNDO];
+    private final long[] undoKey = new long[MAX_UNDO];
     private int undoTop = 0;
 
+    // Occurrences of every position on the game path, for O(1) threefold detection. Boards built
+    // by copyPositionFrom do not track them.
+    private final RepetitionTable repetitions = new RepetitionTable();
+    private boolean trackRepetitions = true;
+
+    /*
+     * Optional incrementally maintained attack maps, enabled with -Dchess.attackMaps=true or
+     * setAttackMaps(true). attackCount[side][sq] is the number of that side's pieces hitting sq,
+     * attackedBy[side] the squares where that count is non-zero. Every add/remove refreshes the
+     * moved piece and only the sliders whose rays pass through the changed square.
+     */
+    private static final boolean DEFAULT_ATTACK_MAPS = Boolean.getBoolean("chess.attackMaps");
+
+    public final long[] attackedBy = new long[2];
+    public final int[][] attackCount = new int[2][64];
+    private final long[] pieceAttacks = new long[64];
+    private boolean attackMaps = DEFAULT_ATTACK_MAPS;
+
+    // Check info for the side to move, computed on first use and dropped by every make / unmake
+    private long checkers;
+    private long pinned;
+    private boolean checkInfoValid;
+
+    // Hidden layer inputs of an attached NNUE network, fed by every make / unmake; null when none is
+    private NnueAccumulator nnue;
+
 
 
 
 
     public Board() {
-        clear();
-        for (int i = 0; i < undoStack.length; i++) undoStack[i] = new Undo();
+        reset();
     }
 
 
-    public void clear() {
-        whitePawns = whiteKnights = whiteBishops = whiteRooks = whiteQueens = whiteKing = 0L;
-        blackPawns = blackKnights = blackBishops = blackRooks = blackQueens = blackKing = 0L;
-        whitePieces = blackPieces = allPieces = 0L;
+    /**
+     * Empties the board for reuse. Allocation-free: the undo stack, key history and repetition
+     * table keep their storage, only their fill marks are reset.
+     */
+    public void reset() {
+        Arrays.fill(pieces, 0L);
+        occupancy[Constants.WHITE] = occupancy[Constants.BLACK] = 0L;
+        allPieces = 0L;
 
         sideToMove = Constants.WHITE;
         castlingRights = 0;
@@ -60,95 +132,246 @@ public class Board implements CloneableBoard {
         fullmoveNumber = 1;
 
         zobristKey = 0L;
+        pawnKey = 0L;
         whiteKingSq = -1;
         blackKingSq = -1;
 
         whiteNonPawnMaterial = 0;
         blackNonPawnMaterial = 0;
 
+        Arrays.fill(pieceCount, 0);
+        materialKey = 0;
+        materialOverflow = 0;
+        psqMg = psqEg = 0;
+
         for (int i = 0; i < 64; i++) pieceAt[i] = -1;
         historyPly = 0;
         lastIrreversiblePly = 0;
 
         undoTop = 0;
-    }
+        checkInfoValid = false;
 
-    public void loadFEN(String fen) {
-        clear();
+        repetitions.clear();
+        trackRepetitions = true;
 
-        String[] parts = fen.trim().split("\\s+");
-        String piecePlacement = parts[0];
-        String activeColor = parts[1];
-        String castling = parts[2];
-        String enPassant = parts[3];
+        clearAttackMaps();
+        if (nnue != null) nnue.invalidate();
+    }
 
-        int sq = 56;
+    public void loadFEN(CharSequence fen) {
+        parseFEN(fen, null, 0, fen.length());
+    }
 
-        for (char c : piecePlacement.toCharArray()) {
-            if (c == '/') { sq -= 16; continue; }
-            if (Character.isDigit(c)) { sq += c - '0'; continue; }
+    /** Loads a FEN stored as ASCII in {@code buf[off, off + len)}, e.g. one line of a mapped file. */
+    public void loadFEN(byte[] buf, int off, int len) {
+        parseFEN(null, buf, off, off + len);
+    }
 
-            long bit = 1L << sq;
+    /*
+     * Single-pass FEN parser over either a CharSequence or an ASCII byte range (exactly one of
+     * cs/buf is non-null); no regex, no substrings. The halfmove and fullmove fields are
+     * optional and default to 0 and 1, as in EPD; a halfmove clock above MAX_HALFMOVE_CLOCK or a
+     * fullmove number beyond int range is rejected.
+     */
+    private void parseFEN(CharSequence cs, byte[] buf, int start, int end) {
+        reset();
+
+        int i = skipSpaces(cs, buf, start, end);
+
+        // piece placement
+        int rank = 7, file = 0;
+        for (; i < end; i++) {
+            char c = charAt(cs, buf, i);
+            if (c <= ' ') break;
+
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = PIECE_CHARS.indexOf(c);
+                if (piece < 0 || file > 7 || rank < 0) throw badFEN(cs, buf, start, end);
+                addPieceNoHash(piece, rank * 8 + file++);
+            }
+        }
 
+        // side to move
+        i = skipSpaces(cs, buf, i, end);
+        if (i >= end) throw badFEN(cs, buf, start, end);
+        char side = charAt(cs, buf, i++);
+        if (side == 'w') sideToMove = Constants.WHITE;
+        else if (side == 'b') sideToMove = Constants.BLACK;
+        else throw badFEN(cs, buf, start, end);
+
+        // castling rights
+        i = skipSpaces(cs, buf, i, end);
+        for (; i < end; i++) {
+            char c = charAt(cs, buf, i);
+            if (c <= ' ') break;
             switch (c) {
-                case 'P' -> { whitePawns |= bit; pieceAt[sq] = Constants.W_PAWN; }
-                case 'N' -> { whiteKnights |= bit; pieceAt[sq] = Constants.W_KNIGHT; whiteNonPawnMaterial += 3; }
-                case 'B' -> { whiteBishops |= bit; pieceAt[sq] = Constants.W_BISHOP; whiteNonPawnMaterial += 3; }
-                case 'R' -> { whiteRooks |= bit;   pieceAt[sq] = Constants.W_ROOK;   whiteNonPawnMaterial += 5; }
-                case 'Q' -> { whiteQueens |= bit;  pieceAt[sq] = Constants.W_QUEEN;  whiteNonPawnMaterial += 9; }
-                case 'K' -> {
-                    whiteKing |= bit;
-                    whiteKingSq = sq;
-                    pieceAt[sq] = Constants.W_KING;
-                }
+                case 'K' -> castlingRights |= Constants.WHITE_KINGSIDE;
+                case 'Q' -> castlingRights |= Constants.WHITE_QUEENSIDE;
+                case 'k' -> castlingRights |= Constants.BLACK_KINGSIDE;
+                case 'q' -> castlingRights |= Constants.BLACK_QUEENSIDE;
+                case '-' -> {}
+                default -> throw badFEN(cs, buf, start, end);
+            }
+        }
 
-                case 'p' -> { blackPawns |= bit; pieceAt[sq] = Constants.B_PAWN; }
-                case 'n' -> { blackKnights |= bit; pieceAt[sq] = Constants.B_KNIGHT; blackNonPawnMaterial += 3; }
-                case 'b' -> { blackBishops |= bit; pieceAt[sq] = Constants.B_BISHOP; blackNonPawnMaterial += 3; }
-                case 'r' -> { blackRooks |= bit;   pieceAt[sq] = Constants.B_ROOK;   blackNonPawnMaterial += 5; }
-                case 'q' -> { blackQueens |= bit;  pieceAt[sq] = Constants.B_QUEEN;  blackNonPawnMaterial += 9; }
-                case 'k' -> {
-                    blackKing |= bit;
-                    blackKingSq = sq;
-                    pieceAt[sq] = Constants.B_KING;
+        // en passant square
+        i = skipSpaces(cs, buf, i, end);
+        if (i < end && charAt(cs, buf, i) != '-') {
+            if (i + 1 >= end) throw badFEN(cs, buf, start, end);
+            int epFile = charAt(cs, buf, i) - 'a';
+            int epRank = charAt(cs, buf, i + 1) - '1';
+            if (epFile < 0 || epFile > 7 || epRank < 0 || epRank > 7) throw badFEN(cs, buf, start, end);
+            enPassantSquare = epRank * 8 + epFile;
+            i += 2;
+        } else {
+            i++;
+        }
+
+        // halfmove clock and fullmove number
+        i = skipSpaces(cs, buf, i, end);
+        if (i < end) {
+            int n = 0;
+            for (; i < end && charAt(cs, buf, i) > ' '; i++) {
+                n = n * 10 + digit(cs, buf, i, start, end);
+                if (n > MAX_HALFMOVE_CLOCK) throw badFEN(cs, buf, start, end);
+            }
+            halfmoveClock = n;
+
+            i = skipSpaces(cs, buf, i, end);
+            if (i < end) {
+                n = 0;
+                for (; i < end && charAt(cs, buf, i) > ' '; i++) {
+                    int d = digit(cs, buf, i, start, end);
+                    if (n > (Integer.MAX_VALUE - d) / 10) throw badFEN(cs, buf, start, end);
+                    n = n * 10 + d;
                 }
+                fullmoveNumber = Math.max(1, n);
             }
-            sq++;
         }
 
-        sideToMove = activeColor.equals("w") ? Constants.WHITE : Constants.BLACK;
+        finishSetup();
+    }
 
-        if (castling.contains("K")) castlingRights |= Constants.WHITE_KINGSIDE;
-        if (castling.contains("Q")) castlingRights |= Constants.WHITE_QUEENSIDE;
-        if (castling.contains("k")) castlingRights |= Constants.BLACK_KINGSIDE;
-        if (castling.contains("q")) castlingRights |= Constants.BLACK_QUEENSIDE;
+    /** Puts a piece on an empty square while a position is being set up after reset(). */
+    void placePiece(int piece, int sq) {
+        addPieceNoHash(piece, sq);
+    }
 
-        if (!enPassant.equals("-")) {
-            int file = enPassant.charAt(0) - 'a';
-            int rank = enPassant.charAt(1) - '1';
-            enPassantSquare = rank * 8 + file;
+    /** Completes a position set up piece by piece: hashes it and starts its repetition history. */
+    void finishSetup() {
+        zobristKey = Zobrist.hash(this);
+        repetitions.increment(zobristKey);
+        if (nnue != null) nnue.invalidate();
+    }
+
+    private static char charAt(CharSequence cs, byte[] buf, int i) {
+        return buf != null ? (char) (buf[i] & 0xFF) : cs.charAt(i);
+    }
+
+    private static int skipSpaces(CharSequence cs, byte[] buf, int i, int end) {
+        while (i < end && charAt(cs, buf, i) <= ' ') i++;
+        return i;
+    }
+
+    private static int digit(CharSequence cs, byte[] buf, int i, int start, int end) {
+        int d = charAt(cs, buf, i) - '0';
+        if (d < 0 || d > 9) throw badFEN(cs, buf, start, end);
+        return d;
+    }
+
+    private static IllegalArgumentException badFEN(CharSequence cs, byte[] buf, int start, int end) {
+        String fen = buf != null
+            ? new String(buf, start, end - start, StandardCharsets.US_ASCII)
+            : cs.subSequence(start, end).toString();
+        return new IllegalArgumentException("Bad FEN: " + fen);
+    }
+
+    /** Appends the position as FEN to {@code sb} without any intermediate strings. */
+    public StringBuilder toFEN(StringBuilder sb) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = pieceAt[rank * 8 + file];
+                if (piece == -1) {
+                    empty++;
+                    continue;
+                }
+                if (empty != 0) sb.append((char) ('0' + empty));
+                empty = 0;
+                sb.append(PIECE_CHARS.charAt(piece));
+            }
+            if (empty != 0) sb.append((char) ('0' + empty));
+            if (rank != 0) sb.append('/');
         }
 
-        whitePieces = whitePawns | whiteKnights | whiteBishops | whiteRooks | whiteQueens | whiteKing;
-        blackPieces = blackPawns | blackKnights | blackBishops | blackRooks | blackQueens | blackKing;
-        allPieces = whitePieces | blackPieces;
+        sb.append(sideToMove == Constants.WHITE ? " w " : " b ");
 
-        zobristKey = Zobrist.hash(this);
-        historyPly = 0;
-        lastIrreversiblePly = 0;
+        if (castlingRights == 0) sb.append('-');
+        if ((castlingRights & Constants.WHITE_KINGSIDE) != 0) sb.append('K');
+        if ((castlingRights & Constants.WHITE_QUEENSIDE) != 0) sb.append('Q');
+        if ((castlingRights & Constants.BLACK_KINGSIDE) != 0) sb.append('k');
+        if ((castlingRights & Constants.BLACK_QUEENSIDE) != 0) sb.append('q');
 
+        sb.append(' ');
+        if (enPassantSquare == -1) sb.append('-');
+        else sb.append((char) ('a' + (enPassantSquare & 7))).append((char) ('1' + (enPassantSquare >>> 3)));
+
+        return sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
+    public String toFEN() {
+        return toFEN(new StringBuilder(90)).toString();
     }
 
     public boolean isInCheck() {
-        int kingSq = (sideToMove == Constants.WHITE) ? whiteKingSq : blackKingSq;
-        int attacker = sideToMove ^ 1;
-        return AttackGenerator.isSquareAttacked(this, kingSq, attacker);
+        return checkers() != 0;
+    }
+
+    /** Enemy pieces giving check to the side to move. */
+    public long checkers() {
+        if (!checkInfoValid) computeCheckInfo();
+        return checkers;
+    }
+
+    /** Pieces of the side to move pinned against their own king. */
+    public long pinned() {
+        if (!checkInfoValid) computeCheckInfo();
+        return pinned;
+    }
+
+    private void computeCheckInfo() {
+        boolean white = sideToMove == Constants.WHITE;
+        int kingSq = white ? whiteKingSq : blackKingSq;
+
+        if (kingSq < 0) {
+            checkers = pinned = 0L;
+        } else {
+            long own = occupancy[sideToMove];
+            checkers = AttackGenerator.attackersTo(this, kingSq, allPieces) & ~own;
+            pinned = AttackGenerator.sliderBlockers(this, kingSq, sideToMove ^ 1, allPieces) & own;
+        }
+        checkInfoValid = true;
     }
 
     public int getPieceOn(int sq) {
         return pieceAt[sq];
     }
 
+    /** Bishops and queens of both colors. */
+    public long diagonalSliders() {
+        return pieces[Constants.W_BISHOP] | pieces[Constants.B_BISHOP] | pieces[Constants.W_QUEEN] | pieces[Constants.B_QUEEN];
+    }
+
+    /** Rooks and queens of both colors. */
+    public long orthogonalSliders() {
+        return pieces[Constants.W_ROOK] | pieces[Constants.B_ROOK] | pieces[Constants.W_QUEEN] | pieces[Constants.B_QUEEN];
+    }
+
     private static boolean isWhitePiece(int piece) {
         return (piece & 1) == 0;
     }
@@ -158,75 +381,175 @@ public class Board implements CloneableBoard {
         long bb = 1L << sq;
         pieceAt[sq] = -1;
 
-        switch (piece) {
-            case Constants.W_KING -> { whiteKing &= ~bb; whiteKingSq = -1; }
-            case Constants.B_KING -> { blackKing &= ~bb; blackKingSq = -1; }
-
-            case Constants.W_PAWN -> whitePawns &= ~bb;
-            case Constants.W_KNIGHT -> whiteKnights &= ~bb;
-            case Constants.W_BISHOP -> whiteBishops &= ~bb;
-            case Constants.W_ROOK -> whiteRooks &= ~bb;
-            case Constants.W_QUEEN -> whiteQueens &= ~bb;
-
-            case Constants.B_PAWN -> blackPawns &= ~bb;
-            case Constants.B_KNIGHT -> blackKnights &= ~bb;
-            case Constants.B_BISHOP -> blackBishops &= ~bb;
-            case Constants.B_ROOK -> blackRooks &= ~bb;
-            case Constants.B_QUEEN -> blackQueens &= ~bb;
+        if (attackMaps) {
+            subtractAttacks(piece & 1, pieceAttacks[sq]);
+            pieceAttacks[sq] = 0L;
         }
 
-        if (isWhitePiece(piece)) whitePieces &= ~bb;
-        else blackPieces &= ~bb;
+        pieces[piece] &= ~bb;
+        occupancy[piece & 1] &= ~bb;
         allPieces &= ~bb;
+
+        if (piece == Constants.W_KING) whiteKingSq = -1;
+        else if (piece == Constants.B_KING) blackKingSq = -1;
+
         int m = pieceMaterial(piece);
         if (m != 0) {
             if (isWhitePiece(piece)) whiteNonPawnMaterial -= m;
             else blackNonPawnMaterial -= m;
         }
+        countRemoved(piece, sq);
+
+        if (attackMaps) refreshSlidersThrough(sq);
+    }
+
+    private void countAdded(int piece, int sq) {
+        if (++pieceCount[piece] > Constants.MATERIAL_KEY_MAX[piece]) materialOverflow++;
+        materialKey += Constants.MATERIAL_KEY_STRIDE[piece];
+        psqMg += PieceSquareTables.MG[piece][sq];
+        psqEg += PieceSquareTables.EG[piece][sq];
+        if (piece <= Constants.B_PAWN) pawnKey ^= Zobrist.PIECE_KEYS[piece][sq];
+    }
 
+    private void countRemoved(int piece, int sq) {
+        if (pieceCount[piece]-- > Constants.MATERIAL_KEY_MAX[piece]) materialOverflow--;
+        materialKey -= Constants.MATERIAL_KEY_STRIDE[piece];
+        psqMg -= PieceSquareTables.MG[piece][sq];
+        psqEg -= PieceSquareTables.EG[piece][sq];
+        if (piece <= Constants.B_PAWN) pawnKey ^= Zobrist.PIECE_KEYS[piece][sq];
     }
 
     private void addPieceNoHash(int piece, int sq) {
         long bb = 1L << sq;
         pieceAt[sq] = piece;
 
-        switch (piece) {
-            case Constants.W_KING -> { whiteKing |= bb; whiteKingSq = sq; }
-            case Constants.B_KING -> { blackKing |= bb; blackKingSq = sq; }
-
-            case Constants.W_PAWN -> whitePawns |= bb;
-            case Constants.W_KNIGHT -> whiteKnights |= bb;
-            case Constants.W_BISHOP -> whiteBishops |= bb;
-            case Constants.W_ROOK -> whiteRooks |= bb;
-            case Constants.W_QUEEN -> whiteQueens |= bb;
-
-            case Constants.B_PAWN -> blackPawns |= bb;
-            case Constants.B_KNIGHT -> blackKnights |= bb;
-            case Constants.B_BISHOP -> blackBishops |= bb;
-            case Constants.B_ROOK -> blackRooks |= bb;
-            case Constants.B_QUEEN -> blackQueens |= bb;
-        }
-
-        if (isWhitePiece(piece)) whitePieces |= bb;
-        else blackPieces |= bb;
+        pieces[piece] |= bb;
+        occupancy[piece & 1] |= bb;
         allPieces |= bb;
 
+        if (piece == Constants.W_KING) whiteKingSq = sq;
+        else if (piece == Constants.B_KING) blackKingSq = sq;
+
         int m = pieceMaterial(piece);
         if (m != 0) {
             if (isWhitePiece(piece)) whiteNonPawnMaterial += m;
             else blackNonPawnMaterial += m;
         }
+        countAdded(piece, sq);
+
+        if (attackMaps) {
+            refreshSlidersThrough(sq);
+            long att = attacksFrom(piece, sq);
+            pieceAttacks[sq] = att;
+            addAttacks(piece & 1, att);
+        }
+    }
+
+    public boolean hasAttackMaps() {
+        return attackMaps;
+    }
+
+    /** Attacks of the piece on {@code sq}, from the attack maps; only valid for occupied squares. */
+    public long pieceAttacks(int sq) {
+        return pieceAttacks[sq];
+    }
+
+    /**
+     * Attaches an NNUE network whose accumulator this board then keeps up to date through every
+     * make / unmake (see {@link engine.eval.NnueEvaluator}); null detaches it.
+     */
+    public void setNnue(NnueNetwork net) {
+        nnue = net != null ? new NnueAccumulator(net) : null;
+    }
+
+    public NnueAccumulator nnue() {
+        return nnue;
+    }
+
+    public void setAttackMaps(boolean enabled) {
+        attackMaps = enabled;
+        clearAttackMaps();
+        if (enabled) rebuildAttackMaps();
+    }
+
+    private void clearAttackMaps() {
+        attackedBy[Constants.WHITE] = attackedBy[Constants.BLACK] = 0L;
+        Arrays.fill(attackCount[Constants.WHITE], 0);
+        Arrays.fill(attackCount[Constants.BLACK], 0);
+        Arrays.fill(pieceAttacks, 0L);
+    }
+
+    private void rebuildAttackMaps() {
+        clearAttackMaps();
+        long bb = allPieces;
+        while (bb != 0) {
+            int sq = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            int piece = pieceAt[sq];
+            pieceAttacks[sq] = attacksFrom(piece, sq);
+            addAttacks(piece & 1, pieceAttacks[sq]);
+        }
+    }
+
+    /** Re-derives the attacks of every slider that sees {@code sq}, whose occupancy just changed. */
+    private void refreshSlidersThrough(int sq) {
+        long sliders = (SliderAttacks.bishopAttacks(sq, allPieces) & diagonalSliders())
+                     | (SliderAttacks.rookAttacks(sq, allPieces) & orthogonalSliders());
+
+        while (sliders != 0) {
+            int s = BitHelper.lsb(sliders);
+            sliders &= sliders - 1;
+
+            int piece = pieceAt[s];
+            long old = pieceAttacks[s];
+            long now = attacksFrom(piece, s);
+            if (now == old) continue;
+
+            subtractAttacks(piece & 1, old & ~now);
+            addAttacks(piece & 1, now & ~old);
+            pieceAttacks[s] = now;
+        }
+    }
+
+    private long attacksFrom(int piece, int sq) {
+        return switch (piece) {
+            case Constants.W_PAWN, Constants.B_PAWN -> BitHelper.attacks(piece & 1, 1L << sq);
+            case Constants.W_KNIGHT, Constants.B_KNIGHT -> Constants.KNIGHT_MASKS[sq];
+            case Constants.W_BISHOP, Constants.B_BISHOP -> SliderAttacks.bishopAttacks(sq, allPieces);
+            case Constants.W_ROOK, Constants.B_ROOK -> SliderAttacks.rookAttacks(sq, allPieces);
+            case Constants.W_QUEEN, Constants.B_QUEEN -> SliderAttacks.queenAttacks(sq, allPieces);
+            default -> Constants.KING_MASKS[sq];
+        };
+    }
+
+    private void addAttacks(int side, long bb) {
+        int[] count = attackCount[side];
+        while (bb != 0) {
+            int sq = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            if (count[sq]++ == 0) attackedBy[side] |= 1L << sq;
+        }
+    }
 
+    private void subtractAttacks(int side, long bb) {
+        int[] count = attackCount[side];
+        while (bb != 0) {
+            int sq = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            if (--count[sq] == 0) attackedBy[side] &= ~(1L << sq);
+        }
     }
 
     private void addPiece(int piece, int sq) {
         addPieceNoHash(piece, sq);
         zobristKey ^= Zobrist.PIECE_KEYS[piece][sq];
+        if (nnue != null) nnue.add(piece, sq);
     }
 
     private void removePiece(int piece, int sq) {
         removePieceNoHash(piece, sq);
         zobristKey ^= Zobrist.PIECE_KEYS[piece][sq];
+        if (nnue != null) nnue.remove(piece, sq);
     }
 
 
@@ -249,7 +572,7 @@ public class Board implements CloneableBoard {
 
 
     public void makeMove(int move) {
-        if (undoTop >= undoStack.length) {
+        if (undoTop >= MAX_UNDO) {
             throw new IllegalStateException("Undo stack overflow (depth too large).");
         }
 
@@ -266,17 +589,15 @@ public class Board implements CloneableBoard {
                 ", to-square: " + to + ", flag :" + flag);
         }
 
-        final Undo u = undoStack[undoTop++];
-        u.move = move;
-        u.movingPiece = movingPiece;
-        u.castlingRights = castlingRights;
-        u.enPassantSquare = enPassantSquare;
-        u.halfmoveClock = halfmoveClock;
-        u.fullmoveNumber = fullmoveNumber;
-        u.zobristKey = zobristKey;
-        u.lastIrreversiblePly = lastIrreversiblePly;
+        checkInfoValid = false;
 
-        keyHistory[historyPly++] = zobristKey;
+        final int slot = undoTop++;
+        undoMove[slot] = move;
+        undoKey[slot] = zobristKey;
+        undoIrreversiblePly[slot] = lastIrreversiblePly;
+
+        pushKeyHistory();
+        if (nnue != null) nnue.push();
 
         if (flag == Constants.CAPTURE
             || flag == Constants.EN_PASSANT
@@ -297,7 +618,7 @@ public class Board implements CloneableBoard {
                     " (from=" + from + ", flag=" + flag + ")");
             }
         }
-        u.capturedPiece = capturedPiece;
+        undoInfo[slot] = packUndoInfo(movingPiece, capturedPiece);
 
 
         if (enPassantSquare != -1) {
@@ -362,24 +683,32 @@ public class Board implements CloneableBoard {
         else halfmoveClock++;
 
         if (us == Constants.BLACK) fullmoveNumber++;
+
+        if (trackRepetitions) repetitions.increment(zobristKey);
+
+        if (VALIDATE) validate();
     }
 
     public void unmakeMove() {
-        final Undo u = undoStack[--undoTop];
+        checkInfoValid = false;
+        if (nnue != null) nnue.pop();
 
-        final int move = u.move;
+        final int slot = --undoTop;
+        final int info = undoInfo[slot];
+        final int movingPiece = info & 0xF;
+        final int capturedPiece = ((info >>> 4) & 0xF) - 1;
+
+        final int move = undoMove[slot];
         final int from = Move.from(move);
         final int to   = Move.to(move);
         final int flag = Move.flags(move);
         final int promo = Move.promo(move);
 
-        castlingRights  = u.castlingRights;
-        enPassantSquare = u.enPassantSquare;
-        halfmoveClock   = u.halfmoveClock;
-        fullmoveNumber  = u.fullmoveNumber;
+        restoreUndoInfo(info);
 
         sideToMove ^= 1;
         final int us = sideToMove;
+        if (us == Constants.BLACK) fullmoveNumber--;
 
         if (flag == Constants.KING_CASTLE) {
             if (us == Constants.WHITE) {
@@ -405,29 +734,80 @@ public class Board implements CloneableBoard {
             removePieceNoHash(promo, to);
 
         } else {
-            removePieceNoHash(u.movingPiece, to);
+            removePieceNoHash(movingPiece, to);
 
         }
 
-        addPieceNoHash(u.movingPiece, from);
+        addPieceNoHash(movingPiece, from);
 
 
-        if (u.capturedPiece != -1) {
+        if (capturedPiece != -1) {
             if (flag == Constants.EN_PASSANT) {
                 final int capSq = (us == Constants.WHITE) ? (to - 8) : (to + 8);
-                addPieceNoHash(u.capturedPiece, capSq);
+                addPieceNoHash(capturedPiece, capSq);
 
             } else {
-                addPieceNoHash(u.capturedPiece, to);
+                addPieceNoHash(capturedPiece, to);
 
             }
         }
 
-        zobristKey = u.zobristKey;
+        if (trackRepetitions) repetitions.decrement(zobristKey);
+        zobristKey = undoKey[slot];
         historyPly--;
-        lastIrreversiblePly = u.lastIrreversiblePly;
+        lastIrreversiblePly = undoIrreversiblePly[slot];
+
+        if (VALIDATE) validate();
+    }
 
+    /**
+     * Recomputes every incrementally maintained value from the mailbox and throws
+     * IllegalStateException on the first mismatch. Runs after each make/unmake with
+     * -Dchess.validate=true; callable directly from tests and debugging sessions.
+     */
+    public void validate() {
+        long[] bbs = new long[12];
+        int[] counts = new int[12];
+        int mg = 0, eg = 0, whiteNpm = 0, blackNpm = 0, key = 0, overflow = 0;
+
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = pieceAt[sq];
+            if (piece == -1) continue;
+            bbs[piece] |= 1L << sq;
+            counts[piece]++;
+            mg += PieceSquareTables.MG[piece][sq];
+            eg += PieceSquareTables.EG[piece][sq];
+            if (isWhitePiece(piece)) whiteNpm += pieceMaterial(piece);
+            else blackNpm += pieceMaterial(piece);
+        }
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++) {
+            key += counts[piece] * Constants.MATERIAL_KEY_STRIDE[piece];
+            overflow += Math.max(0, counts[piece] - Constants.MATERIAL_KEY_MAX[piece]);
+        }
+
+        long white = 0, black = 0;
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++) {
+            if (bbs[piece] != pieces[piece]) throw invalid("pieces[" + piece + "]");
+            if (counts[piece] != pieceCount[piece]) throw invalid("pieceCount[" + piece + "]");
+            if (isWhitePiece(piece)) white |= bbs[piece];
+            else black |= bbs[piece];
+        }
+        if (white != occupancy[Constants.WHITE] || black != occupancy[Constants.BLACK]) throw invalid("occupancy");
+        if ((white | black) != allPieces) throw invalid("allPieces");
+
+        int wk = bbs[Constants.W_KING] == 0 ? -1 : BitHelper.lsb(bbs[Constants.W_KING]);
+        int bk = bbs[Constants.B_KING] == 0 ? -1 : BitHelper.lsb(bbs[Constants.B_KING]);
+        if (wk != whiteKingSq || bk != blackKingSq) throw invalid("king square");
+
+        if (whiteNpm != whiteNonPawnMaterial || blackNpm != blackNonPawnMaterial) throw invalid("non-pawn material");
+        if (overflow != materialOverflow || (overflow == 0 && key != materialKey)) throw invalid("material key");
+        if (mg != psqMg || eg != psqEg) throw invalid("piece-square sums");
+        if (Zobrist.hash(this) != zobristKey) throw invalid("zobrist key");
+        if (Zobrist.pawnHash(this) != pawnKey) throw invalid("pawn key");
+    }
 
+    private IllegalStateException invalid(String what) {
+        return new IllegalStateException("Incremental " + what + " out of sync in " + toFEN());
     }
 
     public void print() {
@@ -467,64 +847,117 @@ public class Board implements CloneableBoard {
     }
 
 
+    private int packUndoInfo(int movingPiece, int capturedPiece) {
+        return movingPiece
+            | ((capturedPiece + 1) << 4)
+            | (castlingRights << 8)
+            | ((enPassantSquare + 1) << 12)
+            | (halfmoveClock << 19);
+    }
+
+    private void restoreUndoInfo(int info) {
+        castlingRights  = (info >>> 8) & 0xF;
+        enPassantSquare = ((info >>> 12) & 0x7F) - 1;
+        halfmoveClock   = info >>> 19;
+    }
+
     @Override public Board copy() {
         Board b = new Board();
+        b.forkFrom(this);
+        return b;
+    }
 
-        b.whitePawns = whitePawns;
-        b.whiteKnights = whiteKnights;
-        b.whiteBishops = whiteBishops;
-        b.whiteRooks = whiteRooks;
-        b.whiteQueens = whiteQueens;
-        b.whiteKing = whiteKing;
-
-        b.blackPawns = blackPawns;
-        b.blackKnights = blackKnights;
-        b.blackBishops = blackBishops;
-        b.blackRooks = blackRooks;
-        b.blackQueens = blackQueens;
-        b.blackKing = blackKing;
+    /**
+     * Turns this board into an exact copy of {@code src}, reusing its own arrays. Only live state
+     * is copied: key history and undo stack up to their current heights.
+     */
+    public void forkFrom(Board src) {
+        copyPositionFrom(src);
 
-        b.whitePieces = whitePieces;
-        b.blackPieces = blackPieces;
-        b.allPieces = allPieces;
+        repetitions.copyFrom(src.repetitions);
+        trackRepetitions = src.trackRepetitions;
 
-        b.sideToMove = sideToMove;
-        b.castlingRights = castlingRights;
-        b.enPassantSquare = enPassantSquare;
-        b.halfmoveClock = halfmoveClock;
-        b.fullmoveNumber = fullmoveNumber;
+        System.arraycopy(src.keyHistory, 0, keyHistory, 0, src.lastIrreversiblePly);
 
-        b.zobristKey = zobristKey;
+        undoTop = src.undoTop;
+        System.arraycopy(src.undoMove, 0, undoMove, 0, undoTop);
+        System.arraycopy(src.undoInfo, 0, undoInfo, 0, undoTop);
+        System.arraycopy(src.undoIrreversiblePly, 0, undoIrreversiblePly, 0, undoTop);
+        System.arraycopy(src.undoKey, 0, undoKey, 0, undoTop);
+    }
 
-        b.whiteKingSq = whiteKingSq;
-        b.blackKingSq = blackKingSq;
+    /**
+     * Copies the position of {@code src} and just the key history {@link #isRepetition} can reach,
+     * with an empty undo stack: the starting point for copy-make, where the copy is made into and
+     * never unmade. The copy keeps no repetition counts; threefold detection on it scans the history.
+     */
+    public void copyPositionFrom(Board src) {
+        System.arraycopy(src.pieces, 0, pieces, 0, 12);
+        occupancy[Constants.WHITE] = src.occupancy[Constants.WHITE];
+        occupancy[Constants.BLACK] = src.occupancy[Constants.BLACK];
+        allPieces = src.allPieces;
+
+        sideToMove = src.sideToMove;
+        castlingRights = src.castlingRights;
+        enPassantSquare = src.enPassantSquare;
+        halfmoveClock = src.halfmoveClock;
+        fullmoveNumber = src.fullmoveNumber;
+
+        zobristKey = src.zobristKey;
+        pawnKey = src.pawnKey;
+
+        whiteKingSq = src.whiteKingSq;
+        blackKingSq = src.blackKingSq;
+        whiteNonPawnMaterial = src.whiteNonPawnMaterial;
+        blackNonPawnMaterial = src.blackNonPawnMaterial;
+
+        System.arraycopy(src.pieceCount, 0, pieceCount, 0, 12);
+        materialKey = src.materialKey;
+        materialOverflow = src.materialOverflow;
+        psqMg = src.psqMg;
+        psqEg = src.psqEg;
+
+        System.arraycopy(src.pieceAt, 0, pieceAt, 0, 64);
+
+        historyPly = src.historyPly;
+        lastIrreversiblePly = src.lastIrreversiblePly;
+        if (keyHistory.length < src.keyHistory.length) keyHistory = new long[src.keyHistory.length];
+        System.arraycopy(src.keyHistory, lastIrreversiblePly, keyHistory, lastIrreversiblePly, historyPly - lastIrreversiblePly);
 
-        System.arraycopy(this.pieceAt, 0, b.pieceAt, 0, 64);
+        undoTop = 0;
+        trackRepetitions = false;
 
-        b.historyPly = historyPly;
-        b.lastIrreversiblePly = lastIrreversiblePly;
-        System.arraycopy(this.keyHistory, 0, b.keyHistory, 0, historyPly);
+        checkers = src.checkers;
+        pinned = src.pinned;
+        checkInfoValid = src.checkInfoValid;
 
-        b.undoTop = undoTop;
-        for (int i = 0; i < undoTop; i++) {
-            b.undoStack[i].copyFrom(this.undoStack[i]);
+        if (src.nnue == null) {
+            nnue = null;
+        } else {
+            if (nnue == null || nnue.network() != src.nnue.network()) nnue = new NnueAccumulator(src.nnue.network());
+            nnue.copyFrom(src.nnue);
         }
 
-        return b;
+        attackMaps = src.attackMaps;
+        if (attackMaps) {
+            attackedBy[Constants.WHITE] = src.attackedBy[Constants.WHITE];
+            attackedBy[Constants.BLACK] = src.attackedBy[Constants.BLACK];
+            System.arraycopy(src.attackCount[Constants.WHITE], 0, attackCount[Constants.WHITE], 0, 64);
+            System.arraycopy(src.attackCount[Constants.BLACK], 0, attackCount[Constants.BLACK], 0, 64);
+            System.arraycopy(src.pieceAttacks, 0, pieceAttacks, 0, 64);
+        }
     }
 
     public void makeNullMove() {
-        Undo u = undoStack[undoTop++];
+        checkInfoValid = false;
 
-        u.move = 0;
-        u.castlingRights = castlingRights;
-        u.enPassantSquare = enPassantSquare;
-        u.halfmoveClock = halfmoveClock;
-        u.fullmoveNumber = fullmoveNumber;
-        u.zobristKey = zobristKey;
-        u.lastIrreversiblePly = lastIrreversiblePly;
+        final int slot = undoTop++;
+        undoMove[slot] = 0;
+        undoInfo[slot] = packUndoInfo(0, -1);
+        undoKey[slot] = zobristKey;
+        undoIrreversiblePly[slot] = lastIrreversiblePly;
 
-        keyHistory[historyPly++] = zobristKey;
+        pushKeyHistory();
 
         if (enPassantSquare != -1) {
             zobristKey ^= Zobrist.ENPASSANT_KEYS[enPassantSquare];
@@ -536,21 +969,23 @@ public class Board implements CloneableBoard {
 
         halfmoveClock++;
 
+        if (trackRepetitions) repetitions.increment(zobristKey);
+
     }
 
     public void unmakeNullMove() {
-        Undo u = undoStack[--undoTop];
+        checkInfoValid = false;
+
+        final int slot = --undoTop;
 
-        castlingRights = u.castlingRights;
-        enPassantSquare = u.enPassantSquare;
-        halfmoveClock = u.halfmoveClock;
-        fullmoveNumber = u.fullmoveNumber;
-        zobristKey = u.zobristKey;
+        restoreUndoInfo(undoInfo[slot]);
+        if (trackRepetitions) repetitions.decrement(zobristKey);
+        zobristKey = undoKey[slot];
 
         sideToMove ^= 1;
 
         historyPly--;
-        lastIrreversiblePly = u.lastIrreversiblePly;
+        lastIrreversiblePly = undoIrreversiblePly[slot];
     }
 
     private static int pieceMaterial(int piece) {
@@ -581,16 +1016,21 @@ public class Board implements CloneableBoard {
     }
 
     public boolean isThreefoldRepetition() {
-        int repeats = 1;
-        long key = zobristKey;
+        if (trackRepetitions) return repetitions.count(zobristKey) >= 3;
 
-        for (int i = historyPly - 2; i >= 0; i -= 2) {
-            if (keyHistory[i] == key) repeats++;
-            if (repeats >= 3) return true;
+        // No counts on a copy-make board; nothing before the last irreversible move can repeat anyway
+        int repeats = 1;
+        for (int i = historyPly - 2; i >= lastIrreversiblePly; i -= 2) {
+            if (keyHistory[i] == zobristKey && ++repeats >= 3) return true;
         }
         return false;
     }
 
+    private void pushKeyHistory() {
+        if (historyPly == keyHistory.length) keyHistory = Arrays.copyOf(keyHistory, historyPly * 2);
+        keyHistory[historyPly++] = zobristKey;
+    }
+
 
 
 
@@ -0,0 +1,80 @@
+package engine.board;
+
+import engine.common.BitHelper;
+import engine.common.Constants;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size 32-byte binary position format, for storing large position sets.
+ *
+ * Layout, written with the buffer's byte order:
+ *   bytes  0-7   occupancy bitboard
+ *   bytes  8-23  one 4-bit piece id per occupied square in ascending square order, low nibble
+ *                first; unused nibbles are zero
+ *   bytes 24-31  side to move (bit 0), castling rights (1-4), en passant square + 1 (5-11),
+ *                halfmove clock (12-27), fullmove number (28-43)
+ *
+ * Decoding yields the same position, clocks and zobrist key as the encoded board, with an empty
+ * move history. Neither direction allocates.
+ */
+public final class PackedPosition {
+
+    public static final int BYTES = 32;
+
+    private static final int MAX_PIECES = 32;
+
+    private PackedPosition() {}
+
+    /** Writes {@code board} at the buffer's position and advances it by {@link #BYTES}. */
+    public static void encode(Board board, ByteBuffer buf) {
+        long occ = board.allPieces;
+        if (BitHelper.popcount(occ) > MAX_PIECES) {
+            throw new IllegalArgumentException("More than " + MAX_PIECES + " pieces: " + board.toFEN());
+        }
+
+        buf.putLong(occ);
+
+        long lo = 0, hi = 0;
+        int n = 0;
+        for (long bb = occ; bb != 0; bb &= bb - 1, n++) {
+            long nibble = board.getPieceOn(BitHelper.lsb(bb));
+            if (n < 16) lo |= nibble << (4 * n);
+            else hi |= nibble << (4 * (n - 16));
+        }
+        buf.putLong(lo);
+        buf.putLong(hi);
+
+        long state = board.sideToMove
+            | (long) board.castlingRights << 1
+            | (long) (board.enPassantSquare + 1) << 5
+            | (long) (board.halfmoveClock & 0xFFFF) << 12
+            | (long) (board.fullmoveNumber & 0xFFFF) << 28;
+        buf.putLong(state);
+    }
+
+    /** Loads the position at the buffer's position into {@code board} and advances by {@link #BYTES}. */
+    public static void decode(ByteBuffer buf, Board board) {
+        long occ = buf.getLong();
+        long lo = buf.getLong();
+        long hi = buf.getLong();
+        long state = buf.getLong();
+
+        board.reset();
+
+        int n = 0;
+        for (long bb = occ; bb != 0; bb &= bb - 1, n++) {
+            int piece = (int) ((n < 16 ? lo >>> (4 * n) : hi >>> (4 * (n - 16))) & 0xF);
+            if (piece > Constants.B_KING) throw new IllegalArgumentException("Bad piece nibble " + piece);
+            board.placePiece(piece, BitHelper.lsb(bb));
+        }
+
+        board.sideToMove = (int) (state & 1);
+        board.castlingRights = (int) ((state >>> 1) & 0xF);
+        board.enPassantSquare = (int) ((state >>> 5) & 0x7F) - 1;
+        board.halfmoveClock = (int) ((state >>> 12) & 0xFFFF);
+        board.fullmoveNumber = (int) ((state >>> 28) & 0xFFFF);
+
+        board.finishSetup();
+    }
+}
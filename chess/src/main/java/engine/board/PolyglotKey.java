@@ -0,0 +1,90 @@
+package engine.board;
+
+import engine.common.BitHelper;
+import engine.common.Constants;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Position key of the Polyglot opening book format, so that standard {@code .bin} books can be
+ * probed. Built from scratch on each call rather than incrementally like {@link Zobrist}; it is
+ * only needed once per move, at the root.
+ *
+ * The format's 781 Random64 constants (768 piece-square, 4 castling, 8 en passant file and one
+ * side-to-move value) are read from {@value #TABLE_RESOURCE}, one hex value per line in the
+ * order of the format specification, by {@link #loadTable()}.
+ */
+public final class PolyglotKey {
+
+    public static final String TABLE_RESOURCE = "polyglot-random64.txt";
+    public static final int TABLE_SIZE = 781;
+
+    private static final int CASTLE_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+
+    private static volatile long[] random;
+
+    private PolyglotKey() {}
+
+    /** Loads the Random64 table if that has not happened yet. */
+    public static synchronized void loadTable() throws IOException {
+        if (random != null) return;
+
+        try (InputStream in = PolyglotKey.class.getResourceAsStream(TABLE_RESOURCE)) {
+            if (in == null) throw new FileNotFoundException("Polyglot random table not found: " + TABLE_RESOURCE);
+
+            long[] table = new long[TABLE_SIZE];
+            int n = 0;
+            BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            for (String line; (line = r.readLine()) != null; ) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                if (n == TABLE_SIZE) throw new IOException("Polyglot random table has more than " + TABLE_SIZE + " values");
+                if (line.startsWith("0x") || line.startsWith("0X")) line = line.substring(2);
+                table[n++] = Long.parseUnsignedLong(line, 16);
+            }
+            if (n != TABLE_SIZE) throw new IOException("Polyglot random table has " + n + " values, expected " + TABLE_SIZE);
+
+            random = table;
+        }
+    }
+
+    public static long key(Board b) {
+        long[] r = random;
+        if (r == null) throw new IllegalStateException("Polyglot random table not loaded");
+
+        long key = 0L;
+
+        // Polyglot numbers piece kinds black pawn, white pawn, black knight, ...: our id with the color bit flipped
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++) {
+            int base = 64 * (piece ^ 1);
+            long bb = b.pieces[piece];
+            while (bb != 0) {
+                key ^= r[base + BitHelper.lsb(bb)];
+                bb &= bb - 1;
+            }
+        }
+
+        if ((b.castlingRights & Constants.WHITE_KINGSIDE) != 0)  key ^= r[CASTLE_OFFSET];
+        if ((b.castlingRights & Constants.WHITE_QUEENSIDE) != 0) key ^= r[CASTLE_OFFSET + 1];
+        if ((b.castlingRights & Constants.BLACK_KINGSIDE) != 0)  key ^= r[CASTLE_OFFSET + 2];
+        if ((b.castlingRights & Constants.BLACK_QUEENSIDE) != 0) key ^= r[CASTLE_OFFSET + 3];
+
+        // the en passant file only counts when a pawn of the side to move stands ready to capture
+        int ep = b.enPassantSquare;
+        int us = b.sideToMove;
+        if (ep != -1 && (Constants.PAWN_ATTACKS[us ^ 1][ep] & b.pieces[Constants.W_PAWN + us]) != 0) {
+            key ^= r[EN_PASSANT_OFFSET + (ep & 7)];
+        }
+
+        if (us == Constants.WHITE) key ^= r[TURN_OFFSET];
+
+        return key;
+    }
+}
@@ -0,0 +1,100 @@
+package engine.board;
+
+import java.util.Arrays;
+
+/**
+ * Occurrence count per zobrist key for the positions on the current game path. Open addressing
+ * with linear probing and backward-shift deletion, so a key whose count drops back to zero leaves
+ * no tombstone behind. Grows when half full.
+ */
+final class RepetitionTable {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    int count(long key) {
+        for (int i = index(key); counts[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) return counts[i];
+        }
+        return 0;
+    }
+
+    void increment(long key) {
+        int i = index(key);
+        for (; counts[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                counts[i]++;
+                return;
+            }
+        }
+
+        keys[i] = key;
+        counts[i] = 1;
+        if (++size * 2 > keys.length) grow();
+    }
+
+    void decrement(long key) {
+        int i = index(key);
+        while (keys[i] != key || counts[i] == 0) i = (i + 1) & mask;
+
+        if (--counts[i] == 0) {
+            size--;
+            removeAt(i);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    void copyFrom(RepetitionTable src) {
+        if (keys.length != src.keys.length) {
+            keys = new long[src.keys.length];
+            counts = new int[src.counts.length];
+            mask = src.mask;
+        }
+        System.arraycopy(src.keys, 0, keys, 0, keys.length);
+        System.arraycopy(src.counts, 0, counts, 0, counts.length);
+        size = src.size;
+    }
+
+    private void removeAt(int hole) {
+        // pull back every later entry of the cluster that may live at or before the hole
+        for (int j = (hole + 1) & mask; counts[j] != 0; j = (j + 1) & mask) {
+            int home = index(keys[j]);
+            boolean reachable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (reachable) {
+                keys[hole] = keys[j];
+                counts[hole] = counts[j];
+                hole = j;
+            }
+        }
+        counts[hole] = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] == 0) continue;
+            int j = index(oldKeys[i]);
+            while (counts[j] != 0) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            counts[j] = oldCounts[i];
+        }
+    }
+
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -1,5 +1,7 @@
 package engine.board;
 
+import engine.common.Constants;
+
 import java.util.Random;
 
 public class Zobrist {
@@ -27,19 +29,8 @@ public class Zobrist {
     public static long hash(Board b) {
         long key = 0L;
 
-        key ^= hashPieces(b.whitePawns,   0);
-        key ^= hashPieces(b.whiteKnights, 1);
-        key ^= hashPieces(b.whiteBishops, 2);
-        key ^= hashPieces(b.whiteRooks,   3);
-        key ^= hashPieces(b.whiteQueens,  4);
-        key ^= hashPieces(b.whiteKing,    5);
-
-        key ^= hashPieces(b.blackPawns,   6);
-        key ^= hashPieces(b.blackKnights, 7);
-        key ^= hashPieces(b.blackBishops, 8);
-        key ^= hashPieces(b.blackRooks,   9);
-        key ^= hashPieces(b.blackQueens,  10);
-        key ^= hashPieces(b.blackKing,    11);
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++)
+            key ^= hashPieces(b.pieces[piece], piece);
 
         if (b.sideToMove == 1)
             key ^= SIDE_TO_MOVE_KEY;
@@ -52,6 +43,12 @@ public class Zobrist {
         return key;
     }
 
+    /** Key of the pawn placement alone; see {@link Board#pawnKey}. */
+    public static long pawnHash(Board b) {
+        return hashPieces(b.pieces[Constants.W_PAWN], Constants.W_PAWN)
+            ^ hashPieces(b.pieces[Constants.B_PAWN], Constants.B_PAWN);
+    }
+
     private static long hashPieces(long bb, int pieceIndex) {
         long key = 0L;
 
@@ -0,0 +1,127 @@
+package engine.book;
+
+import engine.board.Board;
+import engine.board.PolyglotKey;
+import engine.common.Constants;
+import engine.move.Move;
+import engine.move.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read-only Polyglot opening book ({@code .bin}), memory-mapped rather than loaded, so opening
+ * even a large book is instant and its pages are shared by every engine process on the machine.
+ *
+ * The file is a sequence of 16-byte big-endian entries sorted by key: key (8 bytes), move (2),
+ * weight (2) and a learn field (4) that is ignored. All entries of a position are adjacent and
+ * found by binary search. Probing only reads the buffer by absolute index, so one book can be
+ * shared between threads.
+ */
+public final class PolyglotBook {
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final MappedByteBuffer buf;
+    private final int entries;
+
+    private PolyglotBook(MappedByteBuffer buf) {
+        this.buf = buf;
+        this.entries = buf.capacity() / ENTRY_BYTES;
+    }
+
+    public static PolyglotBook open(Path path) throws IOException {
+        PolyglotKey.loadTable();
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size % ENTRY_BYTES != 0 || size / ENTRY_BYTES > Integer.MAX_VALUE / ENTRY_BYTES) {
+                throw new IOException("Not a Polyglot book: " + path);
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.BIG_ENDIAN);
+            return new PolyglotBook(buf);
+        }
+    }
+
+    public int entries() {
+        return entries;
+    }
+
+    /**
+     * A book move for the position, picked at random with probability proportional to the entry
+     * weights, or 0 if the book has no playable move.
+     */
+    public int probe(Board board) {
+        long key = PolyglotKey.key(board);
+        int first = lowerBound(key);
+        if (first == entries || buf.getLong(first * ENTRY_BYTES) != key) return 0;
+
+        int[] legal = new int[256];
+        int legalCount = MoveGenerator.generateLegalMoves(board, legal);
+
+        int total = 0;
+        for (int i = first; i < entries && buf.getLong(i * ENTRY_BYTES) == key; i++) {
+            if (toMove(board, entryMove(i), legal, legalCount) != 0) total += entryWeight(i);
+        }
+        if (total == 0) return 0;
+
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (int i = first; ; i++) {
+            int move = toMove(board, entryMove(i), legal, legalCount);
+            if (move == 0) continue;
+            pick -= entryWeight(i);
+            if (pick < 0) return move;
+        }
+    }
+
+    /** Index of the first entry whose key is not below {@code key}, comparing unsigned. */
+    private int lowerBound(long key) {
+        int lo = 0, hi = entries;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(buf.getLong(mid * ENTRY_BYTES), key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int entryMove(int i) {
+        return buf.getShort(i * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int entryWeight(int i) {
+        return buf.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    /**
+     * The legal move matching a Polyglot move, or 0. Polyglot packs to square (bits 0-5), from
+     * square (6-11) and promotion (12-14: none, knight, bishop, rook, queen), and writes castling
+     * as the king capturing its own rook.
+     */
+    private static int toMove(Board board, int pg, int[] legal, int legalCount) {
+        int to = pg & 0x3F;
+        int from = (pg >>> 6) & 0x3F;
+        int promo = (pg >>> 12) & 7;
+
+        if (board.getPieceOn(from) == Constants.W_KING + board.sideToMove
+            && (from == 4 || from == 60) && (to == from + 3 || to == from - 4)) {
+            to = to > from ? from + 2 : from - 2;
+        }
+
+        for (int i = 0; i < legalCount; i++) {
+            int m = legal[i];
+            if (Move.from(m) != from || Move.to(m) != to) continue;
+            // promotion piece ids are 2 * kind + color, kinds running knight 1 .. queen 4
+            int movePromo = Move.flags(m) >= Constants.PROMO_KNIGHT ? Move.promo(m) >> 1 : 0;
+            if (movePromo == promo) return m;
+        }
+        return 0;
+    }
+}
@@ -143,6 +143,12 @@ public class Constants {
 
     public static final int[] PIECE_VALUE = {PAWN_VALUE,PAWN_VALUE,KNIGHT_VALUE,KNIGHT_VALUE,BISHOP_VALUE,BISHOP_VALUE,ROOK_VALUE,ROOK_VALUE,QUEEN_VALUE,QUEEN_VALUE,KING_VALUE,KING_VALUE};
 
+    // Material key: the piece counts of both sides as one mixed-radix index, covering up to 8 pawns,
+    // 2 of each minor and rook and 1 queen per side. Kings have stride 0 and do not take part.
+    public static final int[] MATERIAL_KEY_MAX = {8, 8, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1};
+    public static final int[] MATERIAL_KEY_STRIDE = {1, 9, 81, 243, 729, 2187, 6561, 19683, 59049, 118098, 0, 0};
+    public static final int MATERIAL_KEY_SIZE = 236196;
+
     public static final int WHITE_KINGSIDE = 1;
     public static final int WHITE_QUEENSIDE = 1 << 1;
 
@@ -586,4 +592,48 @@ public class Constants {
             0x8000000000000000L};
 
 
+    /** Squares strictly between two aligned squares; 0 when they share no line. */
+    public static final long[][] BETWEEN = new long[64][64];
+
+    /** The full rank, file or diagonal through two aligned squares; 0 when they share none. */
+    public static final long[][] LINE = new long[64][64];
+
+    /** Squares a pawn of the given color attacks from each square. */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // Walked square by square rather than built from slider attacks, so Constants never depends
+    // on a class that itself reads Constants during initialization.
+    static {
+        final int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}, {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}};
+
+        for (int a = 0; a < 64; a++) {
+            for (int[] d : directions) {
+                long line = 1L << a;
+                for (int f = (a & 7) + d[0], r = (a >>> 3) + d[1]; f >= 0 && f < 8 && r >= 0 && r < 8; f += d[0], r += d[1]) {
+                    line |= 1L << (r * 8 + f);
+                }
+                for (int f = (a & 7) - d[0], r = (a >>> 3) - d[1]; f >= 0 && f < 8 && r >= 0 && r < 8; f -= d[0], r -= d[1]) {
+                    line |= 1L << (r * 8 + f);
+                }
+
+                long between = 0;
+                for (int f = (a & 7) + d[0], r = (a >>> 3) + d[1]; f >= 0 && f < 8 && r >= 0 && r < 8; f += d[0], r += d[1]) {
+                    int b = r * 8 + f;
+                    BETWEEN[a][b] = between;
+                    LINE[a][b] = line;
+                    between |= 1L << b;
+                }
+            }
+
+            int file = a & 7, rank = a >>> 3;
+            if (rank < 7) {
+                if (file > 0) PAWN_ATTACKS[WHITE][a] |= 1L << (a + 7);
+                if (file < 7) PAWN_ATTACKS[WHITE][a] |= 1L << (a + 9);
+            }
+            if (rank > 0) {
+                if (file > 0) PAWN_ATTACKS[BLACK][a] |= 1L << (a - 9);
+                if (file < 7) PAWN_ATTACKS[BLACK][a] |= 1L << (a - 7);
+            }
+        }
+    }
 }
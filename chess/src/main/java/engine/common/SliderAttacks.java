@@ -0,0 +1,178 @@
+package engine.common;
+
+/**
+ * Precomputed slider attack lookups.
+ *
+ * The backend is chosen once at class load through {@code -Dchess.sliders=magic|pext|hyperbola}
+ * (default: magic). Since {@link #BACKEND} is a static final the JIT folds the dispatch away.
+ *
+ * magic:     fancy magic multiplication into a shared table
+ * pext:      Long.compress (PEXT on BMI2 hardware) into the same table layout
+ * hyperbola: no tables, plain hyperbola quintessence (kept as reference / for benchmarking)
+ */
+public final class SliderAttacks {
+
+    public enum Backend { HYPERBOLA, MAGIC, PEXT }
+
+    public static final Backend BACKEND = parseBackend(System.getProperty("chess.sliders", "magic"));
+
+    private static final int MODE = BACKEND.ordinal();
+    private static final int MODE_HYPERBOLA = 0;
+    private static final int MODE_MAGIC = 1;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] ROOK_MASKS = new long[64];
+
+    // Found offline with the usual sparse-random trial search against the masks below.
+    private static final long[] BISHOP_MAGICS = {
+        0x2019500400840110L, 0x0003240400820050L, 0x814802044A0009C0L, 0x0408084100000200L,
+        0x000110400000002CL, 0x8008822060090000L, 0x0800820530C10000L, 0x0010C10410114C00L,
+        0x0050842004042080L, 0x8000C4044C840102L, 0x2421085810528000L, 0x0010080610449004L,
+        0x0015040420018008L, 0x100181C420600000L, 0x8004110490242020L, 0x0324210080842003L,
+        0x0084088909101402L, 0x0503021002081104L, 0x03408A0802004009L, 0x0428000402142400L,
+        0x1002005422010408L, 0x0A02009101A20D01L, 0x0800402088041100L, 0x1002280042025004L,
+        0x0221101008324810L, 0x8102020011902200L, 0x000C300848004042L, 0x084004400C050020L,
+        0x8004840068802008L, 0x020902000A445000L, 0x0021004001080800L, 0x0042004008241202L,
+        0x0041104810410901L, 0x0003013000204C80L, 0x140921B000480080L, 0x0062008020020200L,
+        0x2112108400220021L, 0x8004080822020080L, 0x8004640041240100L, 0x4114040044008044L,
+        0x0144422004681040L, 0x0001091042001049L, 0x0003021804000601L, 0x0902002018000100L,
+        0x0A08885104403400L, 0x0006289001000180L, 0x20500188050B8880L, 0x0004840846008240L,
+        0x00004C1094100004L, 0x800041082110C000L, 0x401801008C908102L, 0xA008000104880404L,
+        0x0600414025010719L, 0x0008844850010044L, 0x482008818104000CL, 0x200801082E104800L,
+        0x0001160804020800L, 0x0000204046103100L, 0x0258A20582094100L, 0x0022008000208800L,
+        0x2800000024650401L, 0x4224001020010103L, 0x0024082021520200L, 0x9008011004010820L
+    };
+
+    private static final long[] ROOK_MAGICS = {
+        0x2180004004802610L, 0x0440001008402003L, 0x0180200110008008L, 0x4100082100041002L,
+        0x4100024800441100L, 0x4A0009501822000CL, 0x0080010000800200L, 0x0980010004402080L,
+        0x881480018020C000L, 0x4050400040201000L, 0x8000802000801002L, 0x4109002009001000L,
+        0x8820800802040080L, 0x1222000410020108L, 0xC00D000100420014L, 0x0803000201804500L,
+        0x5008208000401080L, 0x1020414010002001L, 0x0200808020001002L, 0x9030010009021122L,
+        0x6000808008000401L, 0x6001818004000200L, 0x3000040002100108L, 0x8002020000411084L,
+        0x2018800100244101L, 0x2120004840100020L, 0x68C0200100110841L, 0x002800808010000AL,
+        0x0008080080040080L, 0x000DC40080020080L, 0x0000100400410208L, 0x4200008200184104L,
+        0x800480400A800020L, 0x1009004005002089L, 0x0800200088801002L, 0x0010081042002200L,
+        0x0008080080800400L, 0x9000800400800200L, 0x000081918C001088L, 0x1040142082000041L,
+        0x400081C006288000L, 0x1006400083050021L, 0xC800200010008080L, 0x0201002010030008L,
+        0x00020004200A0010L, 0x0022000430520008L, 0x4040020108840010L, 0x09680108805A0004L,
+        0x818008A0084000C0L, 0x0840100800200020L, 0x0883134022048200L, 0x0010100284080080L,
+        0x2100040008008280L, 0x4000800400020080L, 0x0400020108100400L, 0x52010E6402811200L,
+        0x2001001820408001L, 0x4045002012008042L, 0x0401600010442901L, 0x0411006109049001L,
+        0x0000450800110015L, 0x0002003024484102L, 0x0080120100D00814L, 0x0102108140240D02L
+    };
+
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+
+    private static final long[] BISHOP_MAGIC_TABLE;
+    private static final long[] ROOK_MAGIC_TABLE;
+
+    private static final long[] BISHOP_PEXT_TABLE;
+    private static final long[] ROOK_PEXT_TABLE;
+
+    private static final long EDGES_RANKS = Constants.RANK_1 | Constants.RANK_8;
+    private static final long EDGES_FILES = Constants.FILE_A | Constants.FILE_H;
+
+    static {
+        int bishopSize = 0, rookSize = 0;
+
+        for (int sq = 0; sq < 64; sq++) {
+            long sqBB = 1L << sq;
+
+            BISHOP_MASKS[sq] = (Constants.DIAG_MASKS[sq] | Constants.ANTIDIAG_MASKS[sq])
+                & ~sqBB & ~(EDGES_RANKS | EDGES_FILES);
+
+            ROOK_MASKS[sq] = ((Constants.RANK_MASKS[sq] & ~EDGES_FILES)
+                | (Constants.FILE_MASKS[sq] & ~EDGES_RANKS)) & ~sqBB;
+
+            BISHOP_SHIFTS[sq] = 64 - Long.bitCount(BISHOP_MASKS[sq]);
+            ROOK_SHIFTS[sq] = 64 - Long.bitCount(ROOK_MASKS[sq]);
+
+            BISHOP_OFFSETS[sq] = bishopSize;
+            ROOK_OFFSETS[sq] = rookSize;
+
+            bishopSize += 1 << Long.bitCount(BISHOP_MASKS[sq]);
+            rookSize += 1 << Long.bitCount(ROOK_MASKS[sq]);
+        }
+
+        BISHOP_MAGIC_TABLE = new long[bishopSize];
+        ROOK_MAGIC_TABLE = new long[rookSize];
+        BISHOP_PEXT_TABLE = new long[bishopSize];
+        ROOK_PEXT_TABLE = new long[rookSize];
+
+        for (int sq = 0; sq < 64; sq++) {
+            fillTables(sq, true);
+            fillTables(sq, false);
+        }
+    }
+
+    private SliderAttacks() {}
+
+    public static long bishopAttacks(int sq, long occ) {
+        if (MODE == MODE_MAGIC) {
+            return BISHOP_MAGIC_TABLE[BISHOP_OFFSETS[sq]
+                + (int) (((occ & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+        }
+        if (MODE == MODE_HYPERBOLA) {
+            return hyperbolaBishop(sq, occ);
+        }
+        return BISHOP_PEXT_TABLE[BISHOP_OFFSETS[sq] + (int) Long.compress(occ, BISHOP_MASKS[sq])];
+    }
+
+    public static long rookAttacks(int sq, long occ) {
+        if (MODE == MODE_MAGIC) {
+            return ROOK_MAGIC_TABLE[ROOK_OFFSETS[sq]
+                + (int) (((occ & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+        }
+        if (MODE == MODE_HYPERBOLA) {
+            return hyperbolaRook(sq, occ);
+        }
+        return ROOK_PEXT_TABLE[ROOK_OFFSETS[sq] + (int) Long.compress(occ, ROOK_MASKS[sq])];
+    }
+
+    public static long queenAttacks(int sq, long occ) {
+        return bishopAttacks(sq, occ) | rookAttacks(sq, occ);
+    }
+
+    private static long hyperbolaBishop(int sq, long occ) {
+        return BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq)
+            | BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq);
+    }
+
+    private static long hyperbolaRook(int sq, long occ) {
+        return BitHelper.hyperbolaQuintessence(occ, Constants.RANK_MASKS[sq], sq)
+            | BitHelper.hyperbolaQuintessence(occ, Constants.FILE_MASKS[sq], sq);
+    }
+
+    private static void fillTables(int sq, boolean bishop) {
+        long mask = bishop ? BISHOP_MASKS[sq] : ROOK_MASKS[sq];
+        long magic = bishop ? BISHOP_MAGICS[sq] : ROOK_MAGICS[sq];
+        int shift = bishop ? BISHOP_SHIFTS[sq] : ROOK_SHIFTS[sq];
+        int offset = bishop ? BISHOP_OFFSETS[sq] : ROOK_OFFSETS[sq];
+
+        long[] magicTable = bishop ? BISHOP_MAGIC_TABLE : ROOK_MAGIC_TABLE;
+        long[] pextTable = bishop ? BISHOP_PEXT_TABLE : ROOK_PEXT_TABLE;
+
+        // carry-rippler enumeration of every subset of the mask
+        long subset = 0;
+        do {
+            long att = bishop ? hyperbolaBishop(sq, subset) : hyperbolaRook(sq, subset);
+            magicTable[offset + (int) ((subset * magic) >>> shift)] = att;
+            pextTable[offset + (int) Long.compress(subset, mask)] = att;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+    }
+
+    private static Backend parseBackend(String name) {
+        return switch (name.trim().toLowerCase()) {
+            case "pext" -> Backend.PEXT;
+            case "hyperbola" -> Backend.HYPERBOLA;
+            case "magic" -> Backend.MAGIC;
+            default -> throw new IllegalArgumentException("Unknown slider backend: " + name);
+        };
+    }
+}
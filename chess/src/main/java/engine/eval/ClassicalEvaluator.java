@@ -3,6 +3,9 @@ package engine.eval;
 import engine.board.Board;
 import engine.common.BitHelper;
 import engine.common.Constants;
+import engine.common.SliderAttacks;
+
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Evaluation is "white minus black" (positive = good for white).
@@ -10,33 +13,20 @@ import engine.common.Constants;
  */
 public final class ClassicalEvaluator {
 
-    private static final class AttackCache {
-        long whiteAtt;
-        long blackAtt;
+    /**
+     * Attack data of one evaluation, filled by a single pass over the pieces and read by every
+     * attack-based term. Preallocated once per thread, so evaluating allocates nothing.
+     */
+    private static final class AttackScratch {
+        // attacks of the piece on each square; only the occupied squares are current
+        final long[] pieceAttacks = new long[64];
+        // per side: squares attacked at least once
+        final long[] attacked = new long[2];
     }
 
 
-    // Weights
-    private static final int TEMPO_BONUS = 12;
-
-    // Pawn structure
-    private static final int DOUBLED_PAWN_PENALTY = 20;
-    private static final int ISOLATED_PAWN_PENALTY = 18;
-    private static final int BACKWARD_PAWN_PENALTY = 14;
-    private static final int PASSED_PAWN_BONUS_BASE = 14;
-    private static final int PASSED_PAWN_BONUS_PER_RANK = 10;
-
-    // Piece evaluation / patterns
-    private static final int BISHOP_PAIR_BONUS = 25;
-    private static final int ROOK_OPEN_FILE_BONUS = 18;
-    private static final int ROOK_SEMI_OPEN_FILE_BONUS = 10;
-    private static final int KNIGHT_OUTPOST_BONUS = 14;
-
-    // Mobility
-    private static final int MOBILITY_N = 4;
-    private static final int MOBILITY_B = 4;
-    private static final int MOBILITY_R = 2;
-    private static final int MOBILITY_Q = 1;
+    // Weights, indexed by the EvalParams constants
+    private static final int[] W = EvalParams.ACTIVE;
 
     // Center & space
     private static final long CENTER_4 = sqBB(Constants.D4) | sqBB(Constants.E4) | sqBB(Constants.D5) | sqBB(Constants.E5);
@@ -46,142 +36,330 @@ public final class ClassicalEvaluator {
         | sqBB(Constants.C5) | sqBB(Constants.F5)
         | sqBB(Constants.C6) | sqBB(Constants.D6) | sqBB(Constants.E6) | sqBB(Constants.F6);
 
-    private static final int CENTER_CONTROL_BONUS = 6;
-    private static final int EXT_CENTER_CONTROL_BONUS = 2;
-    private static final int SPACE_BONUS_PER_SQ = 1;
-
-    // Connectivity / trapped / king safety
-    private static final int CONNECTIVITY_BONUS_PER_DEFENDED_PIECE = 2;
-    private static final int TRAPPED_PIECE_PENALTY = 25;
+    private static final long RANKS_4_TO_8 = ~(Constants.RANK_1 | Constants.RANK_2 | Constants.RANK_3);
+    private static final long RANKS_1_TO_5 = ~(Constants.RANK_6 | Constants.RANK_7 | Constants.RANK_8);
 
-    private static final int KING_SAFETY_PAWN_SHIELD = 10;
 
-    private static final int[] KING_ATTACK_SCORES =
-        {0, 4, 10, 18, 28, 40, 60, 80, 100};
+    // Callers without a pawn table of their own (benchmarks, tools) get one per thread
+    private static final ThreadLocal<PawnHashTable> LOCAL_PAWN_TABLE = ThreadLocal.withInitial(PawnHashTable::new);
 
-    // Tapered eval (midgame/endgame blend)
-    private static final int PHASE_N = 1, PHASE_B = 1, PHASE_R = 2, PHASE_Q = 4;
-    private static final int PHASE_MAX = 2 * (2*PHASE_N + 2*PHASE_B + 2*PHASE_R + PHASE_Q);
+    private static final ThreadLocal<AttackScratch> LOCAL_SCRATCH = ThreadLocal.withInitial(AttackScratch::new);
 
+    // Lazy evaluation: calls of evaluate(Board, alpha, beta, ...) that ran, and those that returned early
+    private static final LongAdder LAZY_CALLS = new LongAdder();
+    private static final LongAdder LAZY_EXITS = new LongAdder();
 
     public static int evaluate(Board b) {
+        return evaluate(b, LOCAL_PAWN_TABLE.get());
+    }
+
+    /** {@link #evaluate(Board, PawnHashTable)}, answered from {@code cache} when the position is in it. */
+    public static int evaluate(Board b, PawnHashTable pawnTable, EvalCache cache) {
+        int eval = cache.probe(b.zobristKey);
+        if (eval == EvalCache.MISS) {
+            eval = evaluate(b, pawnTable);
+            cache.store(b.zobristKey, eval);
+        }
+        return eval;
+    }
+
+    public static int evaluate(Board b, PawnHashTable pawnTable) {
+        int pawnSlot = probePawns(b, pawnTable);
+        return attackTerms(b, pawnTable, pawnSlot, cheapTerms(b, pawnTable, pawnSlot));
+    }
+
+    public static int evaluate(Board b, int alpha, int beta) {
+        return evaluate(b, alpha, beta, LOCAL_PAWN_TABLE.get(), null);
+    }
+
+    /**
+     * Evaluation for a caller that only needs to know where the score lies relative to the window
+     * (alpha, beta). The terms that need no attack maps are summed first; if the attack-based
+     * terms cannot bring that sum back into the window even at their largest, the bound they
+     * leave is returned instead: at least beta, or at most alpha. Otherwise the exact evaluation
+     * is returned. Only exact values go into {@code cache}, which may be null.
+     */
+    public static int evaluate(Board b, int alpha, int beta, PawnHashTable pawnTable, EvalCache cache) {
+        if (cache != null) {
+            int eval = cache.probe(b.zobristKey);
+            if (eval != EvalCache.MISS) return eval;
+        }
+
+        LAZY_CALLS.increment();
+
+        int pawnSlot = probePawns(b, pawnTable);
+        int partial = cheapTerms(b, pawnTable, pawnSlot);
+
+        // a drawish scale factor could pull any score towards zero, so the bounds only hold without one
+        if (MaterialTable.scale(b, Constants.WHITE) == MaterialTable.SCALE_NORMAL
+            && MaterialTable.scale(b, Constants.BLACK) == MaterialTable.SCALE_NORMAL) {
+            int low = partial - attackTermsMax(b, Constants.BLACK);
+            int high = partial + attackTermsMax(b, Constants.WHITE);
+            if (b.sideToMove == Constants.BLACK) {
+                int t = low;
+                low = -high;
+                high = -t;
+            }
+
+            if (low >= beta) {
+                LAZY_EXITS.increment();
+                return low;
+            }
+            if (high <= alpha) {
+                LAZY_EXITS.increment();
+                return high;
+            }
+        }
+
+        int eval = attackTerms(b, pawnTable, pawnSlot, partial);
+        if (cache != null) cache.store(b.zobristKey, eval);
+        return eval;
+    }
+
+    /**
+     * Records in {@code t} how the evaluation of {@code b} depends on each weight of the active
+     * {@link EvalParams}, for the tuner. Agrees with {@link #evaluate(Board)}, seen from white,
+     * up to integer rounding.
+     */
+    public static void trace(Board b, EvalTrace t) {
+        t.clear();
+        t.base = MaterialTable.score(b) + MaterialTable.bishopPair(b);
+
+        // piece-square tables, tapered like the board's running sums
+        double mg = (double) MaterialTable.phase(b) / MaterialTable.PHASE_MAX;
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++) {
+            boolean white = (piece & 1) == Constants.WHITE;
+            int type = piece >>> 1;
+            for (long bb = b.pieces[piece]; bb != 0; bb &= bb - 1) {
+                int sq = BitHelper.lsb(bb);
+                int idx = 64 * type + (white ? sq : sq ^ 56);
+                t.add(EvalParams.PST_MG + idx, white ? mg : -mg);
+                t.add(EvalParams.PST_EG + idx, white ? 1 - mg : mg - 1);
+            }
+        }
+
+        long wp = b.pieces[Constants.W_PAWN];
+        long bp = b.pieces[Constants.B_PAWN];
+        evalPawnStructureSide(wp, bp, wp & ~southFill(bp), true, t);
+        evalPawnStructureSide(bp, wp, bp & ~northFill(wp), false, t);
+
+        long wPawnAtt = BitHelper.attacks(Constants.WHITE, wp);
+        long bPawnAtt = BitHelper.attacks(Constants.BLACK, bp);
+        t.add(EvalParams.ROOK_OPEN_FILE_BONUS, rooksOnOpenFiles(b, Constants.WHITE) - rooksOnOpenFiles(b, Constants.BLACK));
+        t.add(EvalParams.ROOK_SEMI_OPEN_FILE_BONUS, rooksOnSemiOpenFiles(b, Constants.WHITE) - rooksOnSemiOpenFiles(b, Constants.BLACK));
+        t.add(EvalParams.KNIGHT_OUTPOST_BONUS, knightOutposts(b, Constants.WHITE, wPawnAtt, bPawnAtt) - knightOutposts(b, Constants.BLACK, bPawnAtt, wPawnAtt));
+        t.add(EvalParams.CONNECTED_ROOKS_BONUS, connectedRooks(b, Constants.WHITE) - connectedRooks(b, Constants.BLACK));
+        t.add(EvalParams.TEMPO_BONUS, b.sideToMove == Constants.WHITE ? 1 : -1);
+
+        AttackScratch scratch = LOCAL_SCRATCH.get();
+        computeAttacks(b, scratch, wPawnAtt, bPawnAtt);
+
+        t.add(EvalParams.MOBILITY_N, mobilityDiff(b, scratch, Constants.W_KNIGHT));
+        t.add(EvalParams.MOBILITY_B, mobilityDiff(b, scratch, Constants.W_BISHOP));
+        t.add(EvalParams.MOBILITY_R, mobilityDiff(b, scratch, Constants.W_ROOK));
+        t.add(EvalParams.MOBILITY_Q, mobilityDiff(b, scratch, Constants.W_QUEEN));
+        t.add(EvalParams.CENTER_CONTROL_BONUS, controlDiff(scratch, CENTER_4));
+        t.add(EvalParams.EXT_CENTER_CONTROL_BONUS, controlDiff(scratch, EXT_CENTER));
+        t.add(EvalParams.CONNECTIVITY_BONUS_PER_DEFENDED_PIECE, defendedPieces(b, scratch));
+        t.add(EvalParams.TRAPPED_PIECE_PENALTY, trappedMinors(b, scratch, Constants.BLACK) - trappedMinors(b, scratch, Constants.WHITE));
+        t.add(EvalParams.KING_SAFETY_PAWN_SHIELD, pawnShieldDiff(b));
+        t.add(EvalParams.KING_ATTACK_SCORES + kingZoneAttacks(b, scratch, Constants.WHITE), -1);
+        t.add(EvalParams.KING_ATTACK_SCORES + kingZoneAttacks(b, scratch, Constants.BLACK), 1);
+        t.add(EvalParams.SPACE_BONUS_PER_SQ, space(scratch));
+
+        // the scale factor depends on which side the unscaled score favours
+        int scale = MaterialTable.scale(b, t.unscaled(W) > 0 ? Constants.WHITE : Constants.BLACK);
+        t.scale = (double) scale / MaterialTable.SCALE_NORMAL;
+    }
+
+    /** Factory of classical evaluators with a pawn hash table and an eval cache of their own. */
+    public static Evaluator.Factory factory() {
+        return () -> new Instance(new PawnHashTable(),
+            EvalCache.DEFAULT_SIZE_MB > 0 ? new EvalCache(EvalCache.DEFAULT_SIZE_MB) : null);
+    }
+
+    /** Factory of classical evaluators with a pawn hash table of their own, all sharing {@code evalCache} (null: none). */
+    public static Evaluator.Factory factory(EvalCache evalCache) {
+        return () -> new Instance(new PawnHashTable(), evalCache);
+    }
+
+    /**
+     * The classical evaluation as a per-thread {@link Evaluator}. Final, so a caller holding this
+     * type calls it directly, however many other evaluators the JVM has loaded.
+     */
+    public static final class Instance implements Evaluator {
+
+        private final PawnHashTable pawnTable;
+        private final EvalCache evalCache; // may be null
+
+        public Instance(PawnHashTable pawnTable, EvalCache evalCache) {
+            this.pawnTable = pawnTable;
+            this.evalCache = evalCache;
+        }
+
+        public PawnHashTable pawnTable() { return pawnTable; }
+
+        public EvalCache evalCache() { return evalCache; }
+
+        @Override
+        public int evaluate(Board board) {
+            return evalCache != null
+                ? ClassicalEvaluator.evaluate(board, pawnTable, evalCache)
+                : ClassicalEvaluator.evaluate(board, pawnTable);
+        }
+
+        @Override
+        public int evaluate(Board board, int alpha, int beta) {
+            return ClassicalEvaluator.evaluate(board, alpha, beta, pawnTable, evalCache);
+        }
+    }
+
+    public static long lazyCalls() { return LAZY_CALLS.sum(); }
 
-        //calculate attacks and cache
-        AttackCache cache = new AttackCache();
-        cache.whiteAtt = allAttacks(b, Constants.WHITE);
-        cache.blackAtt = allAttacks(b, Constants.BLACK);
+    public static long lazyExits() { return LAZY_EXITS.sum(); }
 
-        // --- Material ---
-        int material = material(b);
+    public static void resetLazyStats() {
+        LAZY_CALLS.reset();
+        LAZY_EXITS.reset();
+    }
+
+
+    /** Material, piece-square, pawn structure, piece features, patterns and tempo: white minus black. */
+    private static int cheapTerms(Board b, PawnHashTable pawnTable, int pawnSlot) {
+        long wPawnAtt = pawnTable.pawnAttacks(pawnSlot, Constants.WHITE);
+        long bPawnAtt = pawnTable.pawnAttacks(pawnSlot, Constants.BLACK);
+
+        // --- Material (one table lookup on the material key) ---
+        int material = MaterialTable.score(b);
 
         // --- Piece-square tables (tapered mg/eg) ---
-        int phase = gamePhase(b);
-        int pstMg = pst(b, true);
-        int pstEg = pst(b, false);
-        int pst = taper(pstMg, pstEg, phase);
+        int phase = MaterialTable.phase(b);
+        int pst = taper(b.psqMg, b.psqEg, phase);
 
-        // --- Pawn structure ---
-        int pawns = pawnStructure(b);
+        // --- Pawn structure (cached) ---
+        int pawns = pawnTable.score(pawnSlot);
 
         // --- Evaluation of pieces (bishop pair, rooks on files, outposts, etc.) ---
-        int pieces = pieceFeatures(b);
+        int pieces = pieceFeatures(b, wPawnAtt, bPawnAtt);
 
         // --- Evaluation patterns (simple patterns you can expand) ---
         int patterns = evalPatterns(b);
 
+        // --- Tempo ---
+        int tempo = (b.sideToMove == Constants.WHITE) ? W[EvalParams.TEMPO_BONUS] : -W[EvalParams.TEMPO_BONUS];
+
+        return material + pst + pawns + pieces + patterns + tempo;
+    }
+
+    /** Adds the attack-based terms to {@code partial} and returns the final, side-to-move score. */
+    private static int attackTerms(Board b, PawnHashTable pawnTable, int pawnSlot, int partial) {
+
+        // every piece's attacks, once
+        AttackScratch scratch = LOCAL_SCRATCH.get();
+        computeAttacks(b, scratch, pawnTable.pawnAttacks(pawnSlot, Constants.WHITE), pawnTable.pawnAttacks(pawnSlot, Constants.BLACK));
+
+        int phase = MaterialTable.phase(b);
+
         // --- Mobility ---
-        int mobility = mobility(b);
+        int mobility = mobility(b, scratch);
 
         // --- Center control ---
-        int center = centerControl(cache);
+        int center = centerControl(scratch);
 
         // --- Connectivity (pieces defended by own pieces) ---
-        int conn = connectivity(b, cache);
+        int conn = W[EvalParams.CONNECTIVITY_BONUS_PER_DEFENDED_PIECE] * defendedPieces(b, scratch);
 
         // --- Trapped pieces (very rough heuristic) ---
-        int trapped = trappedPieces(b, cache);
+        int trapped = W[EvalParams.TRAPPED_PIECE_PENALTY]
+            * (trappedMinors(b, scratch, Constants.BLACK) - trappedMinors(b, scratch, Constants.WHITE));
 
         // --- King safety ---
-        int kingSafetyG = kingSafety(b, cache);
+        int kingSafetyG = kingSafety(b, scratch);
         int kingSafety = taper(kingSafetyG, kingSafetyG, phase);
 
         // --- Space ---
-        int space = space(cache);
-
-        // --- Tempo ---
-        int tempo = (b.sideToMove == Constants.WHITE) ? TEMPO_BONUS : -TEMPO_BONUS;
+        int space = W[EvalParams.SPACE_BONUS_PER_SQ] * space(scratch);
 
         int scoreWhiteMinusBlack =
-            material + pst + pawns + pieces + patterns + mobility + center + conn + trapped + kingSafety + space + tempo;
+            partial + mobility + center + conn + trapped + kingSafety + space;
+
+        // --- Drawish material: scale down the side that is ahead ---
+        int scale = MaterialTable.scale(b, scoreWhiteMinusBlack > 0 ? Constants.WHITE : Constants.BLACK);
+        if (scale != MaterialTable.SCALE_NORMAL) scoreWhiteMinusBlack = scoreWhiteMinusBlack * scale / MaterialTable.SCALE_NORMAL;
 
         // Return from side-to-move perspective (common engine convention)
         return (b.sideToMove == Constants.WHITE) ? scoreWhiteMinusBlack : -scoreWhiteMinusBlack;
     }
 
-
-    private static int material(Board b) {
-        int w =
-            Constants.PAWN_VALUE   * BitHelper.popcount(b.whitePawns) +
-                Constants.KNIGHT_VALUE * BitHelper.popcount(b.whiteKnights) +
-                Constants.BISHOP_VALUE * BitHelper.popcount(b.whiteBishops) +
-                Constants.ROOK_VALUE   * BitHelper.popcount(b.whiteRooks) +
-                Constants.QUEEN_VALUE  * BitHelper.popcount(b.whiteQueens);
-
-        int bl =
-            Constants.PAWN_VALUE   * BitHelper.popcount(b.blackPawns) +
-                Constants.KNIGHT_VALUE * BitHelper.popcount(b.blackKnights) +
-                Constants.BISHOP_VALUE * BitHelper.popcount(b.blackBishops) +
-                Constants.ROOK_VALUE   * BitHelper.popcount(b.blackRooks) +
-                Constants.QUEEN_VALUE  * BitHelper.popcount(b.blackQueens);
-
-        return w - bl;
+    /**
+     * Upper bound on what the attack-based terms can add in favour of {@code side}: every piece
+     * at full mobility, all center and space squares controlled, every piece defended, every
+     * enemy minor trapped, a full pawn shield and the enemy king zone swarmed. Each term is a
+     * weight times a count difference, so a negative weight counts the other side's maximum.
+     */
+    private static int attackTermsMax(Board b, int side) {
+        int[] count = b.pieceCount;
+        int them = side ^ 1;
+
+        int mobility = bound(W[EvalParams.MOBILITY_N], 8  * count[Constants.W_KNIGHT + side], 8  * count[Constants.W_KNIGHT + them])
+                     + bound(W[EvalParams.MOBILITY_B], 13 * count[Constants.W_BISHOP + side], 13 * count[Constants.W_BISHOP + them])
+                     + bound(W[EvalParams.MOBILITY_R], 14 * count[Constants.W_ROOK + side],   14 * count[Constants.W_ROOK + them])
+                     + bound(W[EvalParams.MOBILITY_Q], 27 * count[Constants.W_QUEEN + side],  27 * count[Constants.W_QUEEN + them]);
+
+        int center = Math.abs(W[EvalParams.CENTER_CONTROL_BONUS]) * 4 + Math.abs(W[EvalParams.EXT_CENTER_CONTROL_BONUS]) * 16;
+        int conn = bound(W[EvalParams.CONNECTIVITY_BONUS_PER_DEFENDED_PIECE],
+            BitHelper.popcount(b.occupancy[side] & ~b.pieces[Constants.W_KING + side]),
+            BitHelper.popcount(b.occupancy[them] & ~b.pieces[Constants.W_KING + them]));
+        int trapped = bound(W[EvalParams.TRAPPED_PIECE_PENALTY],
+            count[Constants.W_KNIGHT + them] + count[Constants.W_BISHOP + them],
+            count[Constants.W_KNIGHT + side] + count[Constants.W_BISHOP + side]);
+        int king = Math.abs(W[EvalParams.KING_SAFETY_PAWN_SHIELD]) * 6 + kingAttackRange();
+        int space = Math.abs(W[EvalParams.SPACE_BONUS_PER_SQ]) * 32;
+
+        return mobility + center + conn + trapped + king + space;
+    }
+
+    /** Most that {@code weight * (ours - theirs)} reaches for counts up to the given maxima. */
+    private static int bound(int weight, int maxOurs, int maxTheirs) {
+        return weight >= 0 ? weight * maxOurs : -weight * maxTheirs;
+    }
+
+    private static int kingAttackRange() {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < EvalParams.KING_ATTACK_SIZE; i++) {
+            int v = W[EvalParams.KING_ATTACK_SCORES + i];
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        return max - min;
     }
 
 
+    /** Slot of the pawn table holding this position's pawn data, filling it on a miss. */
+    private static int probePawns(Board b, PawnHashTable table) {
+        long key = b.pawnKey;
+        int slot = table.slot(key);
+        if (table.hit(slot, key)) return slot;
 
-    private static int pst(Board b, boolean midgame) {
-        int score = 0;
-
-        score += pstPieces(b.whitePawns,   midgame ? PST_P_MG : PST_P_EG, true);
-        score += pstPieces(b.whiteKnights, midgame ? PST_N_MG : PST_N_EG, true);
-        score += pstPieces(b.whiteBishops, midgame ? PST_B_MG : PST_B_EG, true);
-        score += pstPieces(b.whiteRooks,   midgame ? PST_R_MG : PST_R_EG, true);
-        score += pstPieces(b.whiteQueens,  midgame ? PST_Q_MG : PST_Q_EG, true);
-        score += pstPieces(b.whiteKing,    midgame ? PST_K_MG : PST_K_EG, true);
-
-        score -= pstPieces(b.blackPawns,   midgame ? PST_P_MG : PST_P_EG, false);
-        score -= pstPieces(b.blackKnights, midgame ? PST_N_MG : PST_N_EG, false);
-        score -= pstPieces(b.blackBishops, midgame ? PST_B_MG : PST_B_EG, false);
-        score -= pstPieces(b.blackRooks,   midgame ? PST_R_MG : PST_R_EG, false);
-        score -= pstPieces(b.blackQueens,  midgame ? PST_Q_MG : PST_Q_EG, false);
-        score -= pstPieces(b.blackKing,    midgame ? PST_K_MG : PST_K_EG, false);
-
-        return score;
-    }
-
-    private static int pstPieces(long bb, int[] table, boolean white) {
-        int s = 0;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-            int idx = white ? sq : mirrorVertical(sq);
-            s += table[idx];
-        }
-        return s;
-    }
-
+        long wp = b.pieces[Constants.W_PAWN];
+        long bp = b.pieces[Constants.B_PAWN];
 
-    private static int pawnStructure(Board b) {
-        int score = 0;
+        // passed: no enemy pawn ahead on the same file
+        long wPassed = wp & ~southFill(bp);
+        long bPassed = bp & ~northFill(wp);
 
-        score += evalPawnStructureSide(b.whitePawns, b.blackPawns, true);
-        score -= evalPawnStructureSide(b.blackPawns, b.whitePawns, false);
+        int score = evalPawnStructureSide(wp, bp, wPassed, true, null)
+                  - evalPawnStructureSide(bp, wp, bPassed, false, null);
 
-        return score;
+        table.store(slot, key, score, wPassed | bPassed,
+            BitHelper.attacks(Constants.WHITE, wp), BitHelper.attacks(Constants.BLACK, bp));
+        return slot;
     }
 
-    private static int evalPawnStructureSide(long myPawns, long oppPawns, boolean white) {
+    /** Pawn structure score of one side; also records its weight coefficients in {@code trace} unless null. */
+    private static int evalPawnStructureSide(long myPawns, long oppPawns, long passed, boolean white, EvalTrace trace) {
         int s = 0;
+        int sign = white ? 1 : -1;
 
         long p = myPawns;
 
@@ -194,42 +372,50 @@ public final class ClassicalEvaluator {
 
             // doubled
             int count = BitHelper.popcount(myPawns & fileMask);
-            if (count > 1) s -= DOUBLED_PAWN_PENALTY * (count - 1);
+            if (count > 1) {
+                s -= W[EvalParams.DOUBLED_PAWN_PENALTY] * (count - 1);
+                if (trace != null) trace.add(EvalParams.DOUBLED_PAWN_PENALTY, -sign * (count - 1));
+            }
 
             // isolated
             long adj = 0;
             if (file > 0) adj |= Constants.FILE_MASKS[file - 1];
             if (file < 7) adj |= Constants.FILE_MASKS[file + 1];
-            if ((myPawns & adj) == 0) s -= ISOLATED_PAWN_PENALTY;
-
-            long maskFiles = Constants.FILE_MASKS[file];
-            if (file > 0) maskFiles |= Constants.FILE_MASKS[file - 1];
-            if (file < 7) maskFiles |= Constants.FILE_MASKS[file + 1];
-
-            long inFront = white ? northFill(sqBB(sq)) : southFill(sqBB(sq));
-            long oppBlockers = oppPawns & maskFiles & inFront;
+            if ((myPawns & adj) == 0) {
+                s -= W[EvalParams.ISOLATED_PAWN_PENALTY];
+                if (trace != null) trace.add(EvalParams.ISOLATED_PAWN_PENALTY, -sign);
+            }
 
             long ahead1 = white ? (sqBB(sq) << 8) : (sqBB(sq) >>> 8);
             boolean blocked = (ahead1 & (myPawns | oppPawns)) != 0;
 
-            if (oppBlockers == 0) {
+            if ((passed & sqBB(sq)) != 0) {
                 int rank = sq >>> 3; // 0..7
                 int adv = white ? rank : (7 - rank);
-                int bonus = PASSED_PAWN_BONUS_BASE + PASSED_PAWN_BONUS_PER_RANK;
+                int bonus = W[EvalParams.PASSED_PAWN_BONUS_BASE] + W[EvalParams.PASSED_PAWN_BONUS_PER_RANK];
 
                 if (blocked) bonus /= 2;
 
                 s += bonus * adv;
+                if (trace != null) {
+                    double c = sign * (blocked ? 0.5 : 1.0) * adv;
+                    trace.add(EvalParams.PASSED_PAWN_BONUS_BASE, c);
+                    trace.add(EvalParams.PASSED_PAWN_BONUS_PER_RANK, c);
+                }
 
             } else {
                 if (blocked) {
+                    long inFront = white ? northFill(sqBB(sq)) : southFill(sqBB(sq));
                     adj = 0;
                     if (file > 0) adj |= Constants.FILE_MASKS[file - 1];
                     if (file < 7) adj |= Constants.FILE_MASKS[file + 1];
 
                     long supporters = myPawns & adj;
                     long supportZone = (inFront | sqBB(sq));
-                    if ((supporters & supportZone) == 0) s -= BACKWARD_PAWN_PENALTY;
+                    if ((supporters & supportZone) == 0) {
+                        s -= W[EvalParams.BACKWARD_PAWN_PENALTY];
+                        if (trace != null) trace.add(EvalParams.BACKWARD_PAWN_PENALTY, -sign);
+                    }
                 }
             }
         }
@@ -238,279 +424,138 @@ public final class ClassicalEvaluator {
     }
 
 
-    private static int pieceFeatures(Board b) {
-        int s = 0;
-
-        if (BitHelper.popcount(b.whiteBishops) >= 2) s += BISHOP_PAIR_BONUS;
-        if (BitHelper.popcount(b.blackBishops) >= 2) s -= BISHOP_PAIR_BONUS;
-
-        s += rooksOnFiles(b.whiteRooks, b.whitePawns, b.blackPawns);
-        s -= rooksOnFiles(b.blackRooks, b.blackPawns, b.whitePawns);
-
-        s += knightOutposts(b.whiteKnights, b.whitePawns, b.blackPawns, true);
-        s -= knightOutposts(b.blackKnights, b.blackPawns, b.whitePawns, false);
-
-        return s;
+    private static int pieceFeatures(Board b, long wPawnAtt, long bPawnAtt) {
+        return MaterialTable.bishopPair(b)
+             + W[EvalParams.ROOK_OPEN_FILE_BONUS] * (rooksOnOpenFiles(b, Constants.WHITE) - rooksOnOpenFiles(b, Constants.BLACK))
+             + W[EvalParams.ROOK_SEMI_OPEN_FILE_BONUS] * (rooksOnSemiOpenFiles(b, Constants.WHITE) - rooksOnSemiOpenFiles(b, Constants.BLACK))
+             + W[EvalParams.KNIGHT_OUTPOST_BONUS] * (knightOutposts(b, Constants.WHITE, wPawnAtt, bPawnAtt) - knightOutposts(b, Constants.BLACK, bPawnAtt, wPawnAtt));
     }
 
-    private static int rooksOnFiles(long rooks, long myPawns, long oppPawns) {
-        int s = 0;
-        long bb = rooks;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-            int f = sq & 7;
-
-            long file = Constants.FILE_MASKS[f];
-            boolean myPawnOnFile = (myPawns & file) != 0;
-            boolean oppPawnOnFile = (oppPawns & file) != 0;
-
-            if (!myPawnOnFile && !oppPawnOnFile) s += ROOK_OPEN_FILE_BONUS;
-            else if (!myPawnOnFile) s += ROOK_SEMI_OPEN_FILE_BONUS;
-        }
-        return s;
+    private static int rooksOnOpenFiles(Board b, int side) {
+        long pawns = b.pieces[Constants.W_PAWN] | b.pieces[Constants.B_PAWN];
+        return BitHelper.popcount(b.pieces[Constants.W_ROOK + side] & ~fileFill(pawns));
     }
 
-    private static int knightOutposts(long knights, long myPawns, long oppPawns, boolean white) {
-        int s = 0;
-        long bb = knights;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-
-            int rank = sq >>> 3;
-            if (white) {
-                if (rank < 3) continue;
-            } else {
-                if (rank > 4) continue;
-            }
-
-            long sqMask = sqBB(sq);
-
-            long pawnProtect = white ? (BitHelper.blackAttacks(sqMask))
-                : (BitHelper.whiteAttacks(sqMask));
-            boolean prot = (myPawns & pawnProtect) != 0;
-
-            long enemyAttacks = white ? BitHelper.attacks(Constants.BLACK, oppPawns)
-                : BitHelper.attacks(Constants.WHITE, oppPawns);
-            boolean chased = (enemyAttacks & sqMask) != 0;
+    /** Rooks on files without an own pawn but with an enemy one. */
+    private static int rooksOnSemiOpenFiles(Board b, int side) {
+        long own = b.pieces[Constants.W_PAWN + side];
+        long opp = b.pieces[Constants.W_PAWN + (side ^ 1)];
+        return BitHelper.popcount(b.pieces[Constants.W_ROOK + side] & ~fileFill(own) & fileFill(opp));
+    }
 
-            if (prot && !chased) s += KNIGHT_OUTPOST_BONUS;
-        }
-        return s;
+    /** Knights from the fourth rank on (seen from their side) that an own pawn protects and no enemy pawn attacks. */
+    private static int knightOutposts(Board b, int side, long myPawnAttacks, long oppPawnAttacks) {
+        long zone = side == Constants.WHITE ? RANKS_4_TO_8 : RANKS_1_TO_5;
+        return BitHelper.popcount(b.pieces[Constants.W_KNIGHT + side] & zone & myPawnAttacks & ~oppPawnAttacks);
     }
 
 
     private static int evalPatterns(Board b) {
-        int s = 0;
-
-        s += connectedRooksBonus(b, true);
-        s -= connectedRooksBonus(b, false);
-
-        return s;
+        return W[EvalParams.CONNECTED_ROOKS_BONUS]
+            * (connectedRooks(b, Constants.WHITE) - connectedRooks(b, Constants.BLACK));
     }
 
-    private static int connectedRooksBonus(Board b, boolean white) {
-        long rooks = white ? b.whiteRooks : b.blackRooks;
+    /** 1 if the side's first two rooks stand on one rank with nothing between them, else 0. */
+    private static int connectedRooks(Board b, int side) {
+        long rooks = b.pieces[Constants.W_ROOK + side];
         if (BitHelper.popcount(rooks) < 2) return 0;
 
-        int[] sqs = BitHelper.indices(rooks);
-        int a = sqs[0], c = sqs[1];
+        int a = BitHelper.lsb(rooks);
+        int c = BitHelper.lsb(rooks & (rooks - 1));
         if ((a >>> 3) != (c >>> 3)) return 0;
 
         long between = squaresBetweenOnRank(a, c);
         long occ = b.allPieces & ~rooks;
-        if ((between & occ) == 0) return 10;
-        return 0;
+        return (between & occ) == 0 ? 1 : 0;
     }
 
 
-    private static int mobility(Board b) {
-        int s = 0;
-
-        long wOcc = b.whitePawns | b.whiteKnights | b.whiteBishops | b.whiteRooks | b.whiteQueens | b.whiteKing;
-        long bOcc = b.blackPawns | b.blackKnights | b.blackBishops | b.blackRooks | b.blackQueens | b.blackKing;
-        long occ = b.allPieces;
-
-        s += MOBILITY_N * mobilityKnights(b.whiteKnights, wOcc);
-        s += MOBILITY_B * mobilityBishops(b.whiteBishops, occ, wOcc);
-        s += MOBILITY_R * mobilityRooks(b.whiteRooks, occ, wOcc);
-        s += MOBILITY_Q * mobilityQueens(b.whiteQueens, occ, wOcc);
-
-        s -= MOBILITY_N * mobilityKnights(b.blackKnights, bOcc);
-        s -= MOBILITY_B * mobilityBishops(b.blackBishops, occ, bOcc);
-        s -= MOBILITY_R * mobilityRooks(b.blackRooks, occ, bOcc);
-        s -= MOBILITY_Q * mobilityQueens(b.blackQueens, occ, bOcc);
-
-        return s;
+    private static int mobility(Board b, AttackScratch scratch) {
+        return W[EvalParams.MOBILITY_N] * mobilityDiff(b, scratch, Constants.W_KNIGHT)
+             + W[EvalParams.MOBILITY_B] * mobilityDiff(b, scratch, Constants.W_BISHOP)
+             + W[EvalParams.MOBILITY_R] * mobilityDiff(b, scratch, Constants.W_ROOK)
+             + W[EvalParams.MOBILITY_Q] * mobilityDiff(b, scratch, Constants.W_QUEEN);
     }
 
-    private static int mobilityKnights(long knights, long myOcc) {
-        int m = 0;
-        long bb = knights;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-            long moves = Constants.KNIGHT_MASKS[sq] & ~myOcc;
-            m += BitHelper.popcount(moves);
-        }
-        return m;
+    /** Squares reached by white's pieces of the type of {@code whitePiece} minus black's, own pieces excluded. */
+    private static int mobilityDiff(Board b, AttackScratch scratch, int whitePiece) {
+        return reach(b.pieces[whitePiece], scratch, ~b.occupancy[Constants.WHITE])
+             - reach(b.pieces[whitePiece + 1], scratch, ~b.occupancy[Constants.BLACK]);
     }
 
-    private static int mobilityBishops(long bishops, long occ, long myOcc) {
+    /** Attacked squares inside {@code mask}, summed over {@code pieces}. */
+    private static int reach(long pieces, AttackScratch scratch, long mask) {
         int m = 0;
-        long bb = bishops;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-
-            long diag =
-                BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq) |
-                    BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq);
-
-            m += BitHelper.popcount(diag & ~myOcc);
+        while (pieces != 0) {
+            int sq = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            m += BitHelper.popcount(scratch.pieceAttacks[sq] & mask);
         }
         return m;
     }
 
-    private static int mobilityRooks(long rooks, long occ, long myOcc) {
-        int m = 0;
-        long bb = rooks;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-
-            long ortho =
-                BitHelper.hyperbolaQuintessence(occ, Constants.RANK_MASKS[sq], sq) |
-                    BitHelper.hyperbolaQuintessence(occ, Constants.FILE_MASKS[sq], sq);
 
-            m += BitHelper.popcount(ortho & ~myOcc);
-        }
-        return m;
+    private static int centerControl(AttackScratch scratch) {
+        return W[EvalParams.CENTER_CONTROL_BONUS] * controlDiff(scratch, CENTER_4)
+             + W[EvalParams.EXT_CENTER_CONTROL_BONUS] * controlDiff(scratch, EXT_CENTER);
     }
 
-    private static int mobilityQueens(long queens, long occ, long myOcc) {
-        int m = 0;
-        long bb = queens;
-        while (bb != 0) {
-            int sq = Long.numberOfTrailingZeros(bb);
-            bb &= bb - 1;
-
-            long diag =
-                BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq) |
-                    BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq);
-
-            long ortho =
-                BitHelper.hyperbolaQuintessence(occ, Constants.RANK_MASKS[sq], sq) |
-                    BitHelper.hyperbolaQuintessence(occ, Constants.FILE_MASKS[sq], sq);
-
-            m += BitHelper.popcount((diag | ortho) & ~myOcc);
-        }
-        return m;
+    /** Squares of {@code mask} white attacks minus those black attacks. */
+    private static int controlDiff(AttackScratch scratch, long mask) {
+        return BitHelper.popcount(scratch.attacked[Constants.WHITE] & mask)
+             - BitHelper.popcount(scratch.attacked[Constants.BLACK] & mask);
     }
 
 
-    private static int centerControl(AttackCache cache) {
-        long wAtt = cache.whiteAtt;
-        long blAtt = cache.blackAtt;
-
-        int s = 0;
-        s += CENTER_CONTROL_BONUS * BitHelper.popcount(wAtt & CENTER_4);
-        s -= CENTER_CONTROL_BONUS * BitHelper.popcount(blAtt & CENTER_4);
-
-        s += EXT_CENTER_CONTROL_BONUS * BitHelper.popcount(wAtt & EXT_CENTER);
-        s -= EXT_CENTER_CONTROL_BONUS * BitHelper.popcount(blAtt & EXT_CENTER);
+    /** Pieces other than the king defended by an own piece: white minus black. */
+    private static int defendedPieces(Board b, AttackScratch scratch) {
+        long wPieces = b.occupancy[Constants.WHITE] & ~b.pieces[Constants.W_KING];
+        long blPieces = b.occupancy[Constants.BLACK] & ~b.pieces[Constants.B_KING];
 
-        return s;
+        return BitHelper.popcount(wPieces & scratch.attacked[Constants.WHITE])
+             - BitHelper.popcount(blPieces & scratch.attacked[Constants.BLACK]);
     }
 
 
-    private static int connectivity(Board b, AttackCache cache) {
-        long wAtt = cache.whiteAtt;
-        long blAtt = cache.blackAtt;
+    /** Minors of {@code side} that are attacked and have at most one square to go to. */
+    private static int trappedMinors(Board b, AttackScratch scratch, int side) {
+        long notOwn = ~b.occupancy[side];
+        long enemyAttacks = scratch.attacked[side ^ 1];
 
-        long wPieces = b.whitePawns | b.whiteKnights | b.whiteBishops | b.whiteRooks | b.whiteQueens;
-        long blPieces = b.blackPawns | b.blackKnights | b.blackBishops | b.blackRooks | b.blackQueens;
-
-        int s = 0;
-        s += CONNECTIVITY_BONUS_PER_DEFENDED_PIECE * BitHelper.popcount(wPieces & wAtt);
-        s -= CONNECTIVITY_BONUS_PER_DEFENDED_PIECE * BitHelper.popcount(blPieces & blAtt);
-        return s;
-    }
-
-
-    private static int trappedPieces(Board b, AttackCache cache) {
-        int s = 0;
-
-        long wOcc = b.whitePawns | b.whiteKnights | b.whiteBishops | b.whiteRooks | b.whiteQueens | b.whiteKing;
-        long bOcc = b.blackPawns | b.blackKnights | b.blackBishops | b.blackRooks | b.blackQueens | b.blackKing;
-        long occ = b.allPieces;
-
-        long wEnemyAtt = cache.blackAtt;
-        long bEnemyAtt = cache.whiteAtt;
-
-        // White trapped minors
-        s -= trappedMinorPenalty(b.whiteKnights, wOcc, occ, wEnemyAtt, true);
-        s -= trappedMinorPenalty(b.whiteBishops, wOcc, occ, wEnemyAtt, false);
-
-        // Black trapped minors
-        s += trappedMinorPenalty(b.blackKnights, bOcc, occ, bEnemyAtt, true);
-        s += trappedMinorPenalty(b.blackBishops, bOcc, occ, bEnemyAtt, false);
-
-        return s;
-    }
-
-    private static int trappedMinorPenalty(long minors, long myOcc, long occ, long enemyAttacks, boolean knight) {
-        int p = 0;
-        long bb = minors;
+        int n = 0;
+        long bb = b.pieces[Constants.W_KNIGHT + side] | b.pieces[Constants.W_BISHOP + side];
         while (bb != 0) {
             int sq = Long.numberOfTrailingZeros(bb);
             bb &= bb - 1;
 
-            long moves;
-            if (knight) {
-                moves = Constants.KNIGHT_MASKS[sq] & ~myOcc;
-            } else {
-                moves =
-                    (BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq) |
-                        BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq))
-                        & ~myOcc;
-            }
-
-            int mob = BitHelper.popcount(moves);
+            int mob = BitHelper.popcount(scratch.pieceAttacks[sq] & notOwn);
             boolean attacked = (enemyAttacks & sqBB(sq)) != 0;
 
-            if (attacked && mob <= 1) p += TRAPPED_PIECE_PENALTY;
+            if (attacked && mob <= 1) n++;
         }
-        return p;
+        return n;
     }
 
 
-    private static int kingSafety(Board b, AttackCache cache) {
-        int s = 0;
-
-        int wKingSq = BitHelper.lsb(b.whiteKing);
-        int bKingSq = BitHelper.lsb(b.blackKing);
-
-        long wZone = kingZone(wKingSq);
-        long bZone = kingZone(bKingSq);
-
-        s += pawnShieldBonus(b.whitePawns, wKingSq, true);
-        s -= pawnShieldBonus(b.blackPawns, bKingSq, false);
-
-        long wEnemyAtt = cache.blackAtt;
-        long bEnemyAtt = cache.whiteAtt;
-
-        int attacksOnWhite = BitHelper.popcount(wEnemyAtt & wZone);
-        int attacksOnBlack = BitHelper.popcount(bEnemyAtt & bZone);
+    private static int kingSafety(Board b, AttackScratch scratch) {
+        return W[EvalParams.KING_SAFETY_PAWN_SHIELD] * pawnShieldDiff(b)
+             - W[EvalParams.KING_ATTACK_SCORES + kingZoneAttacks(b, scratch, Constants.WHITE)]
+             + W[EvalParams.KING_ATTACK_SCORES + kingZoneAttacks(b, scratch, Constants.BLACK)];
+    }
 
-        s -= KING_ATTACK_SCORES[Math.min(8, attacksOnWhite)];
-        s += KING_ATTACK_SCORES[Math.min(8, attacksOnBlack)];
+    private static int pawnShieldDiff(Board b) {
+        return pawnShield(b.pieces[Constants.W_PAWN], BitHelper.lsb(b.pieces[Constants.W_KING]), true)
+             - pawnShield(b.pieces[Constants.B_PAWN], BitHelper.lsb(b.pieces[Constants.B_KING]), false);
+    }
 
-        return s;
+    /** Enemy-attacked squares in the zone around the king of {@code side}, capped at 8. */
+    private static int kingZoneAttacks(Board b, AttackScratch scratch, int side) {
+        int kingSq = BitHelper.lsb(b.pieces[Constants.W_KING + side]);
+        return Math.min(8, BitHelper.popcount(scratch.attacked[side ^ 1] & kingZone(kingSq)));
     }
 
-    private static int pawnShieldBonus(long pawns, int kingSq, boolean white) {
+    /** Own pawns on the two squares in front of the king and of its neighbouring files. */
+    private static int pawnShield(long pawns, int kingSq, boolean white) {
         int file = kingSq & 7;
         long files = Constants.FILE_MASKS[file];
         if (file > 0) files |= Constants.FILE_MASKS[file - 1];
@@ -520,112 +565,105 @@ public final class ClassicalEvaluator {
         long front2 = white ? (sqBB(kingSq) << 16) : (sqBB(kingSq) >>> 16);
 
         long shieldSquares = (front1 | front2) & files;
-        int cnt = BitHelper.popcount(pawns & shieldSquares);
-        return cnt * KING_SAFETY_PAWN_SHIELD;
+        return BitHelper.popcount(pawns & shieldSquares);
     }
 
 
-    private static int space(AttackCache cache) {
-        long wAtt = cache.whiteAtt;
-        long blAtt = cache.blackAtt;
-
+    /** Squares in the enemy half white attacks minus those black attacks. */
+    private static int space(AttackScratch scratch) {
         long whiteHalfEnemy = Constants.RANK_5 | Constants.RANK_6 | Constants.RANK_7 | Constants.RANK_8;
         long blackHalfEnemy = Constants.RANK_1 | Constants.RANK_2 | Constants.RANK_3 | Constants.RANK_4;
 
-        int s = 0;
-        s += SPACE_BONUS_PER_SQ * BitHelper.popcount(wAtt & whiteHalfEnemy);
-        s -= SPACE_BONUS_PER_SQ * BitHelper.popcount(blAtt & blackHalfEnemy);
-
-        return s;
+        return BitHelper.popcount(scratch.attacked[Constants.WHITE] & whiteHalfEnemy)
+             - BitHelper.popcount(scratch.attacked[Constants.BLACK] & blackHalfEnemy);
     }
 
 
-    private static long allAttacks(Board b, int side) {
-        long occ = b.allPieces;
+    /**
+     * Fills {@code scratch} in one pass over the pieces: every piece's attacks, and per side the
+     * squares it attacks. Pawn attacks come from the pawn hash table. A board with attack maps
+     * already holds all of it, so it is just copied from there.
+     */
+    private static void computeAttacks(Board b, AttackScratch scratch, long wPawnAtt, long bPawnAtt) {
+        if (b.hasAttackMaps()) {
+            copyAttackMaps(b, scratch);
+            return;
+        }
+
+        sideAttacks(b, scratch, Constants.WHITE, wPawnAtt);
+        sideAttacks(b, scratch, Constants.BLACK, bPawnAtt);
+    }
 
-        long pawns   = (side == Constants.WHITE) ? b.whitePawns   : b.blackPawns;
-        long knights = (side == Constants.WHITE) ? b.whiteKnights : b.blackKnights;
-        long bishops = (side == Constants.WHITE) ? b.whiteBishops : b.blackBishops;
-        long rooks   = (side == Constants.WHITE) ? b.whiteRooks   : b.blackRooks;
-        long queens  = (side == Constants.WHITE) ? b.whiteQueens  : b.blackQueens;
-        long king    = (side == Constants.WHITE) ? b.whiteKing    : b.blackKing;
+    private static void copyAttackMaps(Board b, AttackScratch scratch) {
+        long bb = b.allPieces & ~(b.pieces[Constants.W_PAWN] | b.pieces[Constants.B_PAWN]
+                                | b.pieces[Constants.W_KING] | b.pieces[Constants.B_KING]);
+        while (bb != 0) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            bb &= bb - 1;
+            scratch.pieceAttacks[sq] = b.pieceAttacks(sq);
+        }
 
-        long att = 0;
+        scratch.attacked[Constants.WHITE] = b.attackedBy[Constants.WHITE];
+        scratch.attacked[Constants.BLACK] = b.attackedBy[Constants.BLACK];
+    }
 
-        // pawns
-        att |= BitHelper.attacks(side, pawns);
+    private static void sideAttacks(Board b, AttackScratch scratch, int side, long att) {
+        final long occ = b.allPieces;
+        final long[] pieceAttacks = scratch.pieceAttacks;
 
-        // knights
-        long bb = knights;
+        long bb = b.pieces[Constants.W_KNIGHT + side];
         while (bb != 0) {
             int sq = Long.numberOfTrailingZeros(bb);
             bb &= bb - 1;
-            att |= Constants.KNIGHT_MASKS[sq];
+            long a = Constants.KNIGHT_MASKS[sq];
+            pieceAttacks[sq] = a;
+            att |= a;
         }
 
-        // bishops
-        bb = bishops;
+        bb = b.pieces[Constants.W_BISHOP + side];
         while (bb != 0) {
             int sq = Long.numberOfTrailingZeros(bb);
             bb &= bb - 1;
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq);
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq);
+            long a = SliderAttacks.bishopAttacks(sq, occ);
+            pieceAttacks[sq] = a;
+            att |= a;
         }
 
-        // rooks
-        bb = rooks;
+        bb = b.pieces[Constants.W_ROOK + side];
         while (bb != 0) {
             int sq = Long.numberOfTrailingZeros(bb);
             bb &= bb - 1;
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.RANK_MASKS[sq], sq);
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.FILE_MASKS[sq], sq);
+            long a = SliderAttacks.rookAttacks(sq, occ);
+            pieceAttacks[sq] = a;
+            att |= a;
         }
 
-        // queens
-        bb = queens;
+        bb = b.pieces[Constants.W_QUEEN + side];
         while (bb != 0) {
             int sq = Long.numberOfTrailingZeros(bb);
             bb &= bb - 1;
-
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.RANK_MASKS[sq], sq);
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.FILE_MASKS[sq], sq);
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq);
-            att |= BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq);
+            long a = SliderAttacks.queenAttacks(sq, occ);
+            pieceAttacks[sq] = a;
+            att |= a;
         }
 
-        // king
+        long king = b.pieces[Constants.W_KING + side];
         if (king != 0) {
-            int sq = Long.numberOfTrailingZeros(king);
-            att |= Constants.KING_MASKS[sq];
+            long a = Constants.KING_MASKS[Long.numberOfTrailingZeros(king)];
+            att |= a;
         }
 
-        return att;
+        scratch.attacked[side] = att;
     }
 
 
-    private static int gamePhase(Board b) {
-        int phase = 0;
-
-        phase += PHASE_N * (BitHelper.popcount(b.whiteKnights) + BitHelper.popcount(b.blackKnights));
-        phase += PHASE_B * (BitHelper.popcount(b.whiteBishops) + BitHelper.popcount(b.blackBishops));
-        phase += PHASE_R * (BitHelper.popcount(b.whiteRooks)   + BitHelper.popcount(b.blackRooks));
-        phase += PHASE_Q * (BitHelper.popcount(b.whiteQueens)  + BitHelper.popcount(b.blackQueens));
-
-        if (phase > PHASE_MAX) phase = PHASE_MAX;
-        return phase;
-    }
-
     private static int taper(int mg, int eg, int phase) {
-        return (mg * phase + eg * (PHASE_MAX - phase)) / PHASE_MAX;
+        return (mg * phase + eg * (MaterialTable.PHASE_MAX - phase)) / MaterialTable.PHASE_MAX;
     }
 
 
     private static long sqBB(int sq) { return 1L << sq; }
 
-    private static int mirrorVertical(int sq) {
-        return sq ^ 56;
-    }
-
     private static long northFill(long bb) {
         bb |= bb << 8;
         bb |= bb << 16;
@@ -640,6 +678,10 @@ public final class ClassicalEvaluator {
         return bb;
     }
 
+    private static long fileFill(long bb) {
+        return northFill(southFill(bb));
+    }
+
     private static long kingZone(int kingSq) {
         long zone = Constants.KING_MASKS[kingSq] | sqBB(kingSq);
 
@@ -661,137 +703,4 @@ public final class ClassicalEvaluator {
         for (int sq = min + 1; sq < max; sq++) mask |= sqBB(sq);
         return mask;
     }
-
-
-    private static final int[] PST_P_MG = {
-        0,  0,  0,  0,  0,  0,  0,  0,
-        10, 12, 12, -2, -2, 12, 12, 10,
-        6,  8, 10, 14, 14, 10,  8,  6,
-        4,  6,  8, 16, 16,  8,  6,  4,
-        2,  4,  6, 12, 12,  6,  4,  2,
-        0,  2,  2,  6,  6,  2,  2,  0,
-        0,  0,  0, -8, -8,  0,  0,  0,
-        0,  0,  0,  0,  0,  0,  0,  0
-    };
-
-    private static final int[] PST_P_EG = {
-        0,  0,  0,  0,  0,  0,  0,  0,
-        12, 14, 14,  6,  6, 14, 14, 12,
-        10, 12, 12, 10, 10, 12, 12, 10,
-        8, 10, 10, 12, 12, 10, 10,  8,
-        6,  8,  8, 10, 10,  8,  8,  6,
-        4,  6,  6,  8,  8,  6,  6,  4,
-        2,  4,  4,  6,  6,  4,  4,  2,
-        0,  0,  0,  0,  0,  0,  0,  0
-    };
-
-    private static final int[] PST_N_MG = {
-        -40,-30,-20,-20,-20,-20,-30,-40,
-        -30,-10,  0,  4,  4,  0,-10,-30,
-        -20,  4, 10, 12, 12, 10,  4,-20,
-        -20,  6, 12, 16, 16, 12,  6,-20,
-        -20,  6, 12, 16, 16, 12,  6,-20,
-        -20,  4, 10, 12, 12, 10,  4,-20,
-        -30,-10,  0,  2,  2,  0,-10,-30,
-        -40,-30,-20,-20,-20,-20,-30,-40
-    };
-
-    private static final int[] PST_N_EG = {
-        -30,-20,-10,-10,-10,-10,-20,-30,
-        -20, -5,  0,  2,  2,  0, -5,-20,
-        -10,  2,  8, 10, 10,  8,  2,-10,
-        -10,  4, 10, 12, 12, 10,  4,-10,
-        -10,  4, 10, 12, 12, 10,  4,-10,
-        -10,  2,  8, 10, 10,  8,  2,-10,
-        -20, -5,  0,  2,  2,  0, -5,-20,
-        -30,-20,-10,-10,-10,-10,-20,-30
-    };
-
-    private static final int[] PST_B_MG = {
-        -20,-10,-10,-10,-10,-10,-10,-20,
-        -10,  2,  0,  2,  2,  0,  2,-10,
-        -10,  6,  8, 10, 10,  8,  6,-10,
-        -10,  8, 10, 12, 12, 10,  8,-10,
-        -10,  8, 10, 12, 12, 10,  8,-10,
-        -10,  6,  8, 10, 10,  8,  6,-10,
-        -10,  2,  0,  2,  2,  0,  2,-10,
-        -20,-10,-10,-10,-10,-10,-10,-20
-    };
-
-    private static final int[] PST_B_EG = {
-        -10, -5, -5, -5, -5, -5, -5,-10,
-        -5,  2,  2,  2,  2,  2,  2, -5,
-        -5,  4,  6,  6,  6,  6,  4, -5,
-        -5,  4,  6,  8,  8,  6,  4, -5,
-        -5,  4,  6,  8,  8,  6,  4, -5,
-        -5,  4,  6,  6,  6,  6,  4, -5,
-        -5,  2,  2,  2,  2,  2,  2, -5,
-        -10, -5, -5, -5, -5, -5, -5,-10
-    };
-
-    private static final int[] PST_R_MG = {
-        0,  0,  2,  4,  4,  2,  0,  0,
-        -2,  0,  0,  2,  2,  0,  0, -2,
-        -2,  0,  0,  2,  2,  0,  0, -2,
-        -2,  0,  0,  2,  2,  0,  0, -2,
-        -2,  0,  0,  2,  2,  0,  0, -2,
-        -2,  0,  0,  2,  2,  0,  0, -2,
-        4,  6,  6,  8,  8,  6,  6,  4,
-        0,  0,  2,  4,  4,  2,  0,  0
-    };
-
-    private static final int[] PST_R_EG = {
-        0,  0,  2,  4,  4,  2,  0,  0,
-        0,  2,  2,  4,  4,  2,  2,  0,
-        0,  2,  2,  4,  4,  2,  2,  0,
-        0,  2,  2,  4,  4,  2,  2,  0,
-        0,  2,  2,  4,  4,  2,  2,  0,
-        0,  2,  2,  4,  4,  2,  2,  0,
-        2,  4,  4,  6,  6,  4,  4,  2,
-        0,  0,  2,  4,  4,  2,  0,  0
-    };
-
-    private static final int[] PST_Q_MG = {
-        -10, -5, -5, -2, -2, -5, -5,-10,
-        -5,  0,  0,  0,  0,  0,  0, -5,
-        -5,  0,  2,  2,  2,  2,  0, -5,
-        -2,  0,  2,  4,  4,  2,  0, -2,
-        -2,  0,  2,  4,  4,  2,  0, -2,
-        -5,  0,  2,  2,  2,  2,  0, -5,
-        -5,  0,  0,  0,  0,  0,  0, -5,
-        -10, -5, -5, -2, -2, -5, -5,-10
-    };
-
-    private static final int[] PST_Q_EG = {
-        -5, -2, -2, -2, -2, -2, -2, -5,
-        -2,  0,  0,  0,  0,  0,  0, -2,
-        -2,  0,  2,  2,  2,  2,  0, -2,
-        -2,  0,  2,  4,  4,  2,  0, -2,
-        -2,  0,  2,  4,  4,  2,  0, -2,
-        -2,  0,  2,  2,  2,  2,  0, -2,
-        -2,  0,  0,  0,  0,  0,  0, -2,
-        -5, -2, -2, -2, -2, -2, -2, -5
-    };
-
-    private static final int[] PST_K_MG = {
-        20, 30, 10,  0,  0, 10, 30, 20,
-        20, 20,  0,  0,  0,  0, 20, 20,
-        -10,-20,-20,-20,-20,-20,-20,-10,
-        -20,-30,-30,-40,-40,-30,-30,-20,
-        -30,-40,-40,-50,-50,-40,-40,-30,
-        -30,-40,-40,-50,-50,-40,-40,-30,
-        -30,-40,-40,-50,-50,-40,-40,-30,
-        -30,-40,-40,-50,-50,-40,-40,-30
-    };
-
-    private static final int[] PST_K_EG = {
-        -30,-20,-10, -5, -5,-10,-20,-30,
-        -20,-10,  0,  0,  0,  0,-10,-20,
-        -10,  0, 10, 10, 10, 10,  0,-10,
-        -5,  0, 10, 15, 15, 10,  0, -5,
-        -5,  0, 10, 15, 15, 10,  0, -5,
-        -10,  0, 10, 10, 10, 10,  0,-10,
-        -20,-10,  0,  0,  0,  0,-10,-20,
-        -30,-20,-10, -5, -5,-10,-20,-30
-    };
 }
@@ -0,0 +1,79 @@
+package engine.eval;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size cache of static evaluations keyed by {@link engine.board.Board#zobristKey}, so that
+ * positions met again across iterations or threads are not evaluated twice.
+ *
+ * Each entry is two longs: the packed data (evaluation in the low 32 bits, a valid bit above it)
+ * and the full key XORed with that data. A probe only accepts an entry whose two words XOR back
+ * to its key, so entries torn by a concurrent store read as misses and no lock is needed: one
+ * cache can be shared by all search threads, or each thread can own one.
+ */
+public final class EvalCache {
+
+    /** Default size in MB, overridable with -Dchess.evalCacheMB; 0 disables the cache. */
+    public static final int DEFAULT_SIZE_MB = Integer.getInteger("chess.evalCacheMB", 4);
+
+    /** Returned by {@link #probe} when the position is not cached. */
+    public static final int MISS = Integer.MIN_VALUE;
+
+    private static final int ENTRY_SIZE = 16;
+    private static final long VALID = 1L << 32;
+
+    private final long[] table; // two per entry: key ^ data, data
+    private final int mask;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public EvalCache(int sizeMB) {
+        int entries = Integer.highestOneBit(Math.max(1, (int) Math.min(1 << 30, (long) sizeMB * 1024 * 1024 / ENTRY_SIZE)));
+        table = new long[2 * entries];
+        mask = entries - 1;
+    }
+
+    /** The cached evaluation of the position with this key, or {@link #MISS}. */
+    public int probe(long key) {
+        probes.increment();
+
+        int i = index(key);
+        long data = table[i + 1];
+        if ((table[i] ^ data) != key || (data & VALID) == 0) return MISS;
+
+        hits.increment();
+        return (int) data;
+    }
+
+    public void store(long key, int eval) {
+        int i = index(key);
+        long data = (eval & 0xFFFFFFFFL) | VALID;
+        table[i] = key ^ data;
+        table[i + 1] = data;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+    }
+
+    public int entries() { return table.length / 2; }
+
+    public long probes() { return probes.sum(); }
+
+    public long hits() { return hits.sum(); }
+
+    public double hitRate() {
+        long p = probes.sum();
+        return p == 0 ? 0 : (double) hits.sum() / p;
+    }
+
+    public void resetStats() {
+        probes.reset();
+        hits.reset();
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+}
@@ -0,0 +1,357 @@
+package engine.eval;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Every tunable weight of {@link ClassicalEvaluator}, as one int vector: named scalars, the king
+ * attack table and the midgame / endgame piece-square tables. Indices are the constants below;
+ * {@link #group} names the vector's groups in order, as the text format of {@link #load} and
+ * {@link #save} does.
+ *
+ * The evaluation reads the active vector, which starts as the built-in defaults, or as the file
+ * given with -Dchess.evalParams, and is replaced with {@link #set}. Material values, the bishop
+ * pair and scale factors stay in {@link MaterialTable}.
+ */
+public final class EvalParams {
+
+    public static final int TEMPO_BONUS = 0;
+
+    // Pawn structure
+    public static final int DOUBLED_PAWN_PENALTY = 1;
+    public static final int ISOLATED_PAWN_PENALTY = 2;
+    public static final int BACKWARD_PAWN_PENALTY = 3;
+    public static final int PASSED_PAWN_BONUS_BASE = 4;
+    public static final int PASSED_PAWN_BONUS_PER_RANK = 5;
+
+    // Piece evaluation / patterns
+    public static final int ROOK_OPEN_FILE_BONUS = 6;
+    public static final int ROOK_SEMI_OPEN_FILE_BONUS = 7;
+    public static final int KNIGHT_OUTPOST_BONUS = 8;
+    public static final int CONNECTED_ROOKS_BONUS = 9;
+
+    // Mobility, per attacked square not occupied by an own piece
+    public static final int MOBILITY_N = 10;
+    public static final int MOBILITY_B = 11;
+    public static final int MOBILITY_R = 12;
+    public static final int MOBILITY_Q = 13;
+
+    // Center & space
+    public static final int CENTER_CONTROL_BONUS = 14;
+    public static final int EXT_CENTER_CONTROL_BONUS = 15;
+    public static final int SPACE_BONUS_PER_SQ = 16;
+
+    // Connectivity / trapped / king safety
+    public static final int CONNECTIVITY_BONUS_PER_DEFENDED_PIECE = 17;
+    public static final int TRAPPED_PIECE_PENALTY = 18;
+    public static final int KING_SAFETY_PAWN_SHIELD = 19;
+
+    /** Penalty by number of king zone squares the enemy attacks, 0 to 8 or more. */
+    public static final int KING_ATTACK_SCORES = 20;
+    public static final int KING_ATTACK_SIZE = 9;
+
+    /** Piece-square tables per piece type (pawn .. king) and square from white's side, a1 = 0. */
+    public static final int PST_MG = KING_ATTACK_SCORES + KING_ATTACK_SIZE;
+    public static final int PST_EG = PST_MG + 6 * 64;
+
+    public static final int SIZE = PST_EG + 6 * 64;
+
+    private static final String[] SCALAR_NAMES = {
+        "TEMPO_BONUS",
+        "DOUBLED_PAWN_PENALTY", "ISOLATED_PAWN_PENALTY", "BACKWARD_PAWN_PENALTY",
+        "PASSED_PAWN_BONUS_BASE", "PASSED_PAWN_BONUS_PER_RANK",
+        "ROOK_OPEN_FILE_BONUS", "ROOK_SEMI_OPEN_FILE_BONUS", "KNIGHT_OUTPOST_BONUS", "CONNECTED_ROOKS_BONUS",
+        "MOBILITY_N", "MOBILITY_B", "MOBILITY_R", "MOBILITY_Q",
+        "CENTER_CONTROL_BONUS", "EXT_CENTER_CONTROL_BONUS", "SPACE_BONUS_PER_SQ",
+        "CONNECTIVITY_BONUS_PER_DEFENDED_PIECE", "TRAPPED_PIECE_PENALTY", "KING_SAFETY_PAWN_SHIELD",
+    };
+
+    private static final int[] SCALAR_DEFAULTS = {
+        12,
+        20, 18, 14,
+        14, 10,
+        18, 10, 14, 10,
+        4, 4, 2, 1,
+        6, 2, 1,
+        2, 25, 10,
+    };
+
+    private static final int[] KING_ATTACK_DEFAULTS = {0, 4, 10, 18, 28, 40, 60, 80, 100};
+
+    private static final int[] PST_P_MG = {
+        0,  0,  0,  0,  0,  0,  0,  0,
+        10, 12, 12, -2, -2, 12, 12, 10,
+        6,  8, 10, 14, 14, 10,  8,  6,
+        4,  6,  8, 16, 16,  8,  6,  4,
+        2,  4,  6, 12, 12,  6,  4,  2,
+        0,  2,  2,  6,  6,  2,  2,  0,
+        0,  0,  0, -8, -8,  0,  0,  0,
+        0,  0,  0,  0,  0,  0,  0,  0
+    };
+
+    private static final int[] PST_P_EG = {
+        0,  0,  0,  0,  0,  0,  0,  0,
+        12, 14, 14,  6,  6, 14, 14, 12,
+        10, 12, 12, 10, 10, 12, 12, 10,
+        8, 10, 10, 12, 12, 10, 10,  8,
+        6,  8,  8, 10, 10,  8,  8,  6,
+        4,  6,  6,  8,  8,  6,  6,  4,
+        2,  4,  4,  6,  6,  4,  4,  2,
+        0,  0,  0,  0,  0,  0,  0,  0
+    };
+
+    private static final int[] PST_N_MG = {
+        -40,-30,-20,-20,-20,-20,-30,-40,
+        -30,-10,  0,  4,  4,  0,-10,-30,
+        -20,  4, 10, 12, 12, 10,  4,-20,
+        -20,  6, 12, 16, 16, 12,  6,-20,
+        -20,  6, 12, 16, 16, 12,  6,-20,
+        -20,  4, 10, 12, 12, 10,  4,-20,
+        -30,-10,  0,  2,  2,  0,-10,-30,
+        -40,-30,-20,-20,-20,-20,-30,-40
+    };
+
+    private static final int[] PST_N_EG = {
+        -30,-20,-10,-10,-10,-10,-20,-30,
+        -20, -5,  0,  2,  2,  0, -5,-20,
+        -10,  2,  8, 10, 10,  8,  2,-10,
+        -10,  4, 10, 12, 12, 10,  4,-10,
+        -10,  4, 10, 12, 12, 10,  4,-10,
+        -10,  2,  8, 10, 10,  8,  2,-10,
+        -20, -5,  0,  2,  2,  0, -5,-20,
+        -30,-20,-10,-10,-10,-10,-20,-30
+    };
+
+    private static final int[] PST_B_MG = {
+        -20,-10,-10,-10,-10,-10,-10,-20,
+        -10,  2,  0,  2,  2,  0,  2,-10,
+        -10,  6,  8, 10, 10,  8,  6,-10,
+        -10,  8, 10, 12, 12, 10,  8,-10,
+        -10,  8, 10, 12, 12, 10,  8,-10,
+        -10,  6,  8, 10, 10,  8,  6,-10,
+        -10,  2,  0,  2,  2,  0,  2,-10,
+        -20,-10,-10,-10,-10,-10,-10,-20
+    };
+
+    private static final int[] PST_B_EG = {
+        -10, -5, -5, -5, -5, -5, -5,-10,
+        -5,  2,  2,  2,  2,  2,  2, -5,
+        -5,  4,  6,  6,  6,  6,  4, -5,
+        -5,  4,  6,  8,  8,  6,  4, -5,
+        -5,  4,  6,  8,  8,  6,  4, -5,
+        -5,  4,  6,  6,  6,  6,  4, -5,
+        -5,  2,  2,  2,  2,  2,  2, -5,
+        -10, -5, -5, -5, -5, -5, -5,-10
+    };
+
+    private static final int[] PST_R_MG = {
+        0,  0,  2,  4,  4,  2,  0,  0,
+        -2,  0,  0,  2,  2,  0,  0, -2,
+        -2,  0,  0,  2,  2,  0,  0, -2,
+        -2,  0,  0,  2,  2,  0,  0, -2,
+        -2,  0,  0,  2,  2,  0,  0, -2,
+        -2,  0,  0,  2,  2,  0,  0, -2,
+        4,  6,  6,  8,  8,  6,  6,  4,
+        0,  0,  2,  4,  4,  2,  0,  0
+    };
+
+    private static final int[] PST_R_EG = {
+        0,  0,  2,  4,  4,  2,  0,  0,
+        0,  2,  2,  4,  4,  2,  2,  0,
+        0,  2,  2,  4,  4,  2,  2,  0,
+        0,  2,  2,  4,  4,  2,  2,  0,
+        0,  2,  2,  4,  4,  2,  2,  0,
+        0,  2,  2,  4,  4,  2,  2,  0,
+        2,  4,  4,  6,  6,  4,  4,  2,
+        0,  0,  2,  4,  4,  2,  0,  0
+    };
+
+    private static final int[] PST_Q_MG = {
+        -10, -5, -5, -2, -2, -5, -5,-10,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  2,  2,  2,  2,  0, -5,
+        -2,  0,  2,  4,  4,  2,  0, -2,
+        -2,  0,  2,  4,  4,  2,  0, -2,
+        -5,  0,  2,  2,  2,  2,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -10, -5, -5, -2, -2, -5, -5,-10
+    };
+
+    private static final int[] PST_Q_EG = {
+        -5, -2, -2, -2, -2, -2, -2, -5,
+        -2,  0,  0,  0,  0,  0,  0, -2,
+        -2,  0,  2,  2,  2,  2,  0, -2,
+        -2,  0,  2,  4,  4,  2,  0, -2,
+        -2,  0,  2,  4,  4,  2,  0, -2,
+        -2,  0,  2,  2,  2,  2,  0, -2,
+        -2,  0,  0,  0,  0,  0,  0, -2,
+        -5, -2, -2, -2, -2, -2, -2, -5
+    };
+
+    private static final int[] PST_K_MG = {
+        20, 30, 10,  0,  0, 10, 30, 20,
+        20, 20,  0,  0,  0,  0, 20, 20,
+        -10,-20,-20,-20,-20,-20,-20,-10,
+        -20,-30,-30,-40,-40,-30,-30,-20,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30
+    };
+
+    private static final int[] PST_K_EG = {
+        -30,-20,-10, -5, -5,-10,-20,-30,
+        -20,-10,  0,  0,  0,  0,-10,-20,
+        -10,  0, 10, 10, 10, 10,  0,-10,
+        -5,  0, 10, 15, 15, 10,  0, -5,
+        -5,  0, 10, 15, 15, 10,  0, -5,
+        -10,  0, 10, 10, 10, 10,  0,-10,
+        -20,-10,  0,  0,  0,  0,-10,-20,
+        -30,-20,-10, -5, -5,-10,-20,-30
+    };
+
+    private static final String[] PIECE_NAMES = {"P", "N", "B", "R", "Q", "K"};
+
+    // groups in vector order: name, first index, length
+    private static final String[] GROUP_NAMES;
+    private static final int[] GROUP_START;
+    private static final int[] GROUP_LENGTH;
+
+    private static final int[] DEFAULTS = new int[SIZE];
+
+    // the vector the evaluation reads; replaced in place by set()
+    static final int[] ACTIVE = new int[SIZE];
+
+    static {
+        int groups = SCALAR_NAMES.length + 1 + 12;
+        GROUP_NAMES = new String[groups];
+        GROUP_START = new int[groups];
+        GROUP_LENGTH = new int[groups];
+
+        int g = 0;
+        for (int i = 0; i < SCALAR_NAMES.length; i++, g++) {
+            GROUP_NAMES[g] = SCALAR_NAMES[i];
+            GROUP_START[g] = i;
+            GROUP_LENGTH[g] = 1;
+        }
+        GROUP_NAMES[g] = "KING_ATTACK_SCORES";
+        GROUP_START[g] = KING_ATTACK_SCORES;
+        GROUP_LENGTH[g++] = KING_ATTACK_SIZE;
+        for (int type = 0; type < 6; type++, g++) {
+            GROUP_NAMES[g] = "PST_" + PIECE_NAMES[type] + "_MG";
+            GROUP_START[g] = PST_MG + 64 * type;
+            GROUP_LENGTH[g] = 64;
+        }
+        for (int type = 0; type < 6; type++, g++) {
+            GROUP_NAMES[g] = "PST_" + PIECE_NAMES[type] + "_EG";
+            GROUP_START[g] = PST_EG + 64 * type;
+            GROUP_LENGTH[g] = 64;
+        }
+
+        System.arraycopy(SCALAR_DEFAULTS, 0, DEFAULTS, 0, SCALAR_DEFAULTS.length);
+        System.arraycopy(KING_ATTACK_DEFAULTS, 0, DEFAULTS, KING_ATTACK_SCORES, KING_ATTACK_SIZE);
+        int[][] mg = {PST_P_MG, PST_N_MG, PST_B_MG, PST_R_MG, PST_Q_MG, PST_K_MG};
+        int[][] eg = {PST_P_EG, PST_N_EG, PST_B_EG, PST_R_EG, PST_Q_EG, PST_K_EG};
+        for (int type = 0; type < 6; type++) {
+            // the literals above are written rank 1 first, so index = square
+            System.arraycopy(mg[type], 0, DEFAULTS, PST_MG + 64 * type, 64);
+            System.arraycopy(eg[type], 0, DEFAULTS, PST_EG + 64 * type, 64);
+        }
+
+        System.arraycopy(DEFAULTS, 0, ACTIVE, 0, SIZE);
+
+        String file = System.getProperty("chess.evalParams");
+        if (file != null) {
+            try {
+                System.arraycopy(load(Path.of(file)), 0, ACTIVE, 0, SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private EvalParams() {}
+
+    public static int[] defaults() {
+        return DEFAULTS.clone();
+    }
+
+    /** A copy of the vector the evaluation currently uses. */
+    public static int[] current() {
+        return ACTIVE.clone();
+    }
+
+    /**
+     * Makes {@code values} the vector the evaluation uses. Not safe while anything evaluates:
+     * boards already set up keep piece-square sums of the old tables, and pawn hash tables and
+     * eval caches keep old scores, so set positions up again and clear those afterwards.
+     */
+    public static synchronized void set(int[] values) {
+        if (values.length != SIZE) throw new IllegalArgumentException("Expected " + SIZE + " values, got " + values.length);
+        System.arraycopy(values, 0, ACTIVE, 0, SIZE);
+        PieceSquareTables.rebuild();
+    }
+
+    public static int groups() { return GROUP_NAMES.length; }
+
+    public static String group(int g) { return GROUP_NAMES[g]; }
+
+    public static int groupStart(int g) { return GROUP_START[g]; }
+
+    public static int groupLength(int g) { return GROUP_LENGTH[g]; }
+
+    /**
+     * Reads a vector written by {@link #save}: each group name followed by its values, separated
+     * by whitespace, with '#' starting a comment. Groups the file leaves out keep their defaults.
+     */
+    public static int[] load(Path file) throws IOException {
+        int[] values = defaults();
+
+        int g = -1, filled = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+
+            for (String token : line.trim().split("\\s+")) {
+                if (token.isEmpty()) continue;
+
+                char c = token.charAt(0);
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    if (g < 0 || filled == GROUP_LENGTH[g]) {
+                        throw new IOException("Unexpected value " + token + (g < 0 ? "" : " after " + GROUP_NAMES[g]) + " in " + file);
+                    }
+                    values[GROUP_START[g] + filled++] = Integer.parseInt(token);
+                } else {
+                    if (g >= 0 && filled != GROUP_LENGTH[g]) throw new IOException(GROUP_NAMES[g] + " is incomplete in " + file);
+                    g = Arrays.asList(GROUP_NAMES).indexOf(token);
+                    if (g < 0) throw new IOException("Unknown parameter " + token + " in " + file);
+                    filled = 0;
+                }
+            }
+        }
+        if (g >= 0 && filled != GROUP_LENGTH[g]) throw new IOException(GROUP_NAMES[g] + " is incomplete in " + file);
+
+        return values;
+    }
+
+    /** Writes {@code values} in the format {@link #load} reads, tables eight values per line. */
+    public static void save(int[] values, Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int g = 0; g < GROUP_NAMES.length; g++) {
+            sb.append(GROUP_NAMES[g]);
+            if (GROUP_LENGTH[g] == 1) {
+                sb.append(' ').append(values[GROUP_START[g]]).append('\n');
+                continue;
+            }
+            for (int i = 0; i < GROUP_LENGTH[g]; i++) {
+                sb.append(i % 8 == 0 ? "\n   " : "").append(String.format(" %4d", values[GROUP_START[g] + i]));
+            }
+            sb.append('\n');
+        }
+        Files.writeString(file, sb, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,59 @@
+package engine.eval;
+
+import java.util.Arrays;
+
+/**
+ * How one position's classical evaluation depends on the {@link EvalParams} weights, filled by
+ * {@link ClassicalEvaluator#trace}: white minus black, it is
+ * {@code scale * (base + sum of coefficient * weight)} over the recorded entries, where
+ * {@code base} is the part no weight affects (material, bishop pair). A weight may appear in
+ * several entries. Reused from position to position, so tracing allocates nothing once warm.
+ */
+public final class EvalTrace {
+
+    /** White-minus-black score that does not depend on any weight. */
+    public int base;
+
+    /** Drawish-material scale factor applied to the whole score, 1 when the material is normal. */
+    public double scale = 1;
+
+    private int[] index = new int[256];
+    private double[] coef = new double[256];
+    private int count;
+
+    public void clear() {
+        base = 0;
+        scale = 1;
+        count = 0;
+    }
+
+    public void add(int param, double c) {
+        if (c == 0) return;
+        if (count == index.length) {
+            index = Arrays.copyOf(index, 2 * count);
+            coef = Arrays.copyOf(coef, 2 * count);
+        }
+        index[count] = param;
+        coef[count++] = c;
+    }
+
+    public int size() { return count; }
+
+    public int param(int i) { return index[i]; }
+
+    public double coef(int i) { return coef[i]; }
+
+    /** The traced score, white minus black, for the weights {@code w}. */
+    public double score(double[] w) {
+        double s = base;
+        for (int i = 0; i < count; i++) s += coef[i] * w[index[i]];
+        return scale * s;
+    }
+
+    /** The traced score, white minus black, before scaling, for the weights {@code w}. */
+    double unscaled(int[] w) {
+        double s = base;
+        for (int i = 0; i < count; i++) s += coef[i] * w[index[i]];
+        return s;
+    }
+}
@@ -0,0 +1,44 @@
+package engine.eval;
+
+import engine.board.Board;
+
+/**
+ * Static evaluation as used by the search: centipawns from the side to move's point of view.
+ *
+ * Instances are per thread and may keep state (tables, caches, accumulators); every search thread
+ * gets its own from a {@link Factory}. A search calls {@link #attach} on the board it is about to
+ * search, and, if {@link #needsMoveHooks} says so, {@link #onMake} / {@link #onUnmake} around every
+ * move it plays on that board or on copies of it.
+ */
+public interface Evaluator {
+
+    /** Creates the evaluator of one search thread. */
+    @FunctionalInterface
+    interface Factory {
+        Evaluator create();
+    }
+
+    int evaluate(Board board);
+
+    /**
+     * Exact inside (alpha, beta), otherwise possibly just a bound on the far side of the window.
+     * Evaluators without a cheaper bound return {@link #evaluate(Board)}.
+     */
+    default int evaluate(Board board, int alpha, int beta) {
+        return evaluate(board);
+    }
+
+    /** Prepares {@code board} before it is searched by this evaluator's thread. */
+    default void attach(Board board) {}
+
+    /** Whether {@link #onMake} and {@link #onUnmake} need calling; read once, when the search is created. */
+    default boolean needsMoveHooks() {
+        return false;
+    }
+
+    /** {@code move} (0 for a null move) has just been played, giving the position on {@code board}. */
+    default void onMake(Board board, int move) {}
+
+    /** The last move has just been taken back, returning to the position on {@code board}. */
+    default void onUnmake(Board board) {}
+}
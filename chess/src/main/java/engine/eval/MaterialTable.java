@@ -0,0 +1,122 @@
+package engine.eval;
+
+import engine.board.Board;
+import engine.common.Constants;
+
+/**
+ * Material terms precomputed for every material key (see {@link Board#materialKey}): balance,
+ * game phase, bishop pair and a per-side scale factor that damps the evaluation when the side
+ * ahead has material that cannot, or hardly can, win. All values are white minus black.
+ *
+ * Positions beyond the key's range (a third knight or second queen after promotion) are
+ * computed from the board's piece counts instead.
+ */
+public final class MaterialTable {
+
+    // Tapered eval (midgame/endgame blend)
+    public static final int PHASE_N = 1, PHASE_B = 1, PHASE_R = 2, PHASE_Q = 4;
+    public static final int PHASE_MAX = 2 * (2*PHASE_N + 2*PHASE_B + 2*PHASE_R + PHASE_Q);
+
+    public static final int BISHOP_PAIR_BONUS = 25;
+
+    /** Scale of a normally winnable balance; evaluations are multiplied by scale / SCALE_NORMAL. */
+    public static final int SCALE_NORMAL = 64;
+
+    private static final short[] SCORE = new short[Constants.MATERIAL_KEY_SIZE];
+    private static final byte[] PHASE = new byte[Constants.MATERIAL_KEY_SIZE];
+    private static final byte[] BISHOP_PAIR = new byte[Constants.MATERIAL_KEY_SIZE];
+    private static final byte[][] SCALE = new byte[2][Constants.MATERIAL_KEY_SIZE];
+
+    static {
+        int[] counts = new int[12];
+        for (int key = 0; key < Constants.MATERIAL_KEY_SIZE; key++) {
+            int rest = key;
+            for (int p = Constants.B_QUEEN; p >= Constants.W_PAWN; p--) {
+                counts[p] = rest / Constants.MATERIAL_KEY_STRIDE[p];
+                rest %= Constants.MATERIAL_KEY_STRIDE[p];
+            }
+
+            SCORE[key] = (short) computeScore(counts);
+            PHASE[key] = (byte) computePhase(counts);
+            BISHOP_PAIR[key] = (byte) computeBishopPair(counts);
+            SCALE[Constants.WHITE][key] = (byte) computeScale(counts, Constants.WHITE);
+            SCALE[Constants.BLACK][key] = (byte) computeScale(counts, Constants.BLACK);
+        }
+    }
+
+    private MaterialTable() {}
+
+    public static int score(Board b) {
+        return b.materialOverflow == 0 ? SCORE[b.materialKey] : computeScore(b.pieceCount);
+    }
+
+    public static int phase(Board b) {
+        return b.materialOverflow == 0 ? PHASE[b.materialKey] : computePhase(b.pieceCount);
+    }
+
+    public static int bishopPair(Board b) {
+        return b.materialOverflow == 0 ? BISHOP_PAIR[b.materialKey] : computeBishopPair(b.pieceCount);
+    }
+
+    /** Scale factor for an evaluation in favour of {@code strongSide}, out of {@link #SCALE_NORMAL}. */
+    public static int scale(Board b, int strongSide) {
+        return b.materialOverflow == 0 ? SCALE[strongSide][b.materialKey] : computeScale(b.pieceCount, strongSide);
+    }
+
+
+    private static int computeScore(int[] counts) {
+        int s = 0;
+        for (int p = Constants.W_PAWN; p <= Constants.B_QUEEN; p++) {
+            int v = Constants.PIECE_VALUE[p] * counts[p];
+            s += (p & 1) == Constants.WHITE ? v : -v;
+        }
+        return s;
+    }
+
+    private static int computePhase(int[] counts) {
+        int phase = 0;
+
+        phase += PHASE_N * (counts[Constants.W_KNIGHT] + counts[Constants.B_KNIGHT]);
+        phase += PHASE_B * (counts[Constants.W_BISHOP] + counts[Constants.B_BISHOP]);
+        phase += PHASE_R * (counts[Constants.W_ROOK]   + counts[Constants.B_ROOK]);
+        phase += PHASE_Q * (counts[Constants.W_QUEEN]  + counts[Constants.B_QUEEN]);
+
+        if (phase > PHASE_MAX) phase = PHASE_MAX;
+        return phase;
+    }
+
+    private static int computeBishopPair(int[] counts) {
+        int s = 0;
+        if (counts[Constants.W_BISHOP] >= 2) s += BISHOP_PAIR_BONUS;
+        if (counts[Constants.B_BISHOP] >= 2) s -= BISHOP_PAIR_BONUS;
+        return s;
+    }
+
+    private static int computeScale(int[] counts, int us) {
+        int them = us ^ 1;
+        if (counts[Constants.W_PAWN + us] != 0) return SCALE_NORMAL;
+
+        int ours = nonPawnMaterial(counts, us);
+        int theirs = nonPawnMaterial(counts, them);
+
+        // without pawns, an edge of at most a minor rarely wins and a lone minor never does
+        if (ours - theirs <= Constants.BISHOP_VALUE) {
+            if (ours < Constants.ROOK_VALUE) return 0;
+            return theirs <= Constants.BISHOP_VALUE ? 4 : 14;
+        }
+
+        // two knights cannot force mate against a bare king
+        if (ours == 2 * Constants.KNIGHT_VALUE && counts[Constants.W_KNIGHT + us] == 2
+            && theirs == 0 && counts[Constants.W_PAWN + them] == 0) return 0;
+
+        return SCALE_NORMAL;
+    }
+
+    private static int nonPawnMaterial(int[] counts, int side) {
+        int s = 0;
+        for (int p = Constants.W_KNIGHT + side; p <= Constants.B_QUEEN; p += 2) {
+            s += Constants.PIECE_VALUE[p] * counts[p];
+        }
+        return s;
+    }
+}
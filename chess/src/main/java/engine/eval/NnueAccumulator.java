@@ -0,0 +1,138 @@
+package engine.eval;
+
+import engine.board.Board;
+import engine.common.BitHelper;
+import engine.common.Constants;
+
+import java.util.Arrays;
+
+/**
+ * Hidden layer inputs of an {@link NnueNetwork} for one board, as a stack with one entry per
+ * made move. {@link Board#makeMove} pushes a copy of the current entry and feeds it the move's
+ * piece removals and additions; {@link Board#unmakeMove} just pops back to the parent entry.
+ *
+ * An entry can be stale (after setup, a fork, or popping past the bottom of the stack); deltas on
+ * a stale entry are skipped and {@link NnueEvaluator} rebuilds it from the board when it is read.
+ * Not thread-safe: owned by its board.
+ */
+public final class NnueAccumulator {
+
+    /** Whether the dense kernels use jdk.incubator.vector; -Dchess.nnueScalar=true forces the scalar loops. */
+    public static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+        && !Boolean.getBoolean("chess.nnueScalar");
+
+    private final NnueNetwork net;
+    private final int h;
+
+    // per entry: white perspective then black perspective, h values each; grows on demand
+    private short[] stack;
+    private boolean[] valid;
+    private int top;
+
+    public NnueAccumulator(NnueNetwork net) {
+        this.net = net;
+        this.h = net.hidden;
+        this.stack = new short[16 * 2 * h];
+        this.valid = new boolean[16];
+    }
+
+    public NnueNetwork network() {
+        return net;
+    }
+
+    public boolean isValid() {
+        return valid[top];
+    }
+
+    public void push() {
+        if (top + 1 == valid.length) {
+            valid = Arrays.copyOf(valid, 2 * valid.length);
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        boolean v = valid[top];
+        if (v) System.arraycopy(stack, top * 2 * h, stack, (top + 1) * 2 * h, 2 * h);
+        valid[++top] = v;
+    }
+
+    public void pop() {
+        if (top > 0) top--;
+        else valid[0] = false;
+    }
+
+    /** Marks the current entry stale, dropping the entries below it. */
+    public void invalidate() {
+        top = 0;
+        valid[0] = false;
+    }
+
+    public void add(int piece, int sq) {
+        if (!valid[top]) return;
+        int base = top * 2 * h;
+        int w = NnueNetwork.feature(Constants.WHITE, piece, sq) * h;
+        int b = NnueNetwork.feature(Constants.BLACK, piece, sq) * h;
+        if (SIMD) {
+            NnueSimd.add(stack, base, net.featureWeights, w, h);
+            NnueSimd.add(stack, base + h, net.featureWeights, b, h);
+        } else {
+            short[] fw = net.featureWeights;
+            for (int i = 0; i < h; i++) stack[base + i] += fw[w + i];
+            for (int i = 0; i < h; i++) stack[base + h + i] += fw[b + i];
+        }
+    }
+
+    public void remove(int piece, int sq) {
+        if (!valid[top]) return;
+        int base = top * 2 * h;
+        int w = NnueNetwork.feature(Constants.WHITE, piece, sq) * h;
+        int b = NnueNetwork.feature(Constants.BLACK, piece, sq) * h;
+        if (SIMD) {
+            NnueSimd.sub(stack, base, net.featureWeights, w, h);
+            NnueSimd.sub(stack, base + h, net.featureWeights, b, h);
+        } else {
+            short[] fw = net.featureWeights;
+            for (int i = 0; i < h; i++) stack[base + i] -= fw[w + i];
+            for (int i = 0; i < h; i++) stack[base + h + i] -= fw[b + i];
+        }
+    }
+
+    /** Rebuilds the current entry from the pieces on {@code board}. */
+    public void refresh(Board board) {
+        int base = top * 2 * h;
+        System.arraycopy(net.featureBias, 0, stack, base, h);
+        System.arraycopy(net.featureBias, 0, stack, base + h, h);
+        valid[top] = true;
+
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++) {
+            long bb = board.pieces[piece];
+            while (bb != 0) {
+                add(piece, BitHelper.lsb(bb));
+                bb &= bb - 1;
+            }
+        }
+    }
+
+    /** Makes the current entry of {@code src} the only entry of this stack. */
+    public void copyFrom(NnueAccumulator src) {
+        top = 0;
+        valid[0] = src.valid[src.top];
+        if (valid[0]) System.arraycopy(src.stack, src.top * 2 * h, stack, 0, 2 * h);
+    }
+
+    /** Network output in centipawns from the point of view of {@code sideToMove}; the entry must be valid. */
+    public int output(int sideToMove) {
+        int base = top * 2 * h;
+        int us = base + sideToMove * h;
+        int them = base + (sideToMove ^ 1) * h;
+        short[] ow = net.outputWeights;
+
+        int sum;
+        if (SIMD) {
+            sum = NnueSimd.clippedDot(stack, us, ow, 0, h) + NnueSimd.clippedDot(stack, them, ow, h, h);
+        } else {
+            sum = 0;
+            for (int i = 0; i < h; i++) sum += Math.min(Math.max(stack[us + i], 0), NnueNetwork.QA) * ow[i];
+            for (int i = 0; i < h; i++) sum += Math.min(Math.max(stack[them + i], 0), NnueNetwork.QA) * ow[h + i];
+        }
+        return (int) ((long) (sum + net.outputBias) * NnueNetwork.SCALE / (NnueNetwork.QA * NnueNetwork.QB));
+    }
+}
@@ -0,0 +1,48 @@
+package engine.eval;
+
+import engine.board.Board;
+
+/**
+ * Static evaluation by an {@link NnueNetwork}, read from the board's incrementally updated
+ * {@link NnueAccumulator} (see {@link Board#setNnue}). Returns centipawns from the side to move's
+ * point of view, like {@link ClassicalEvaluator}.
+ */
+public final class NnueEvaluator {
+
+    private NnueEvaluator() {}
+
+    public static int evaluate(Board b) {
+        NnueAccumulator acc = b.nnue();
+        if (acc == null) throw new IllegalStateException("Board has no NNUE network attached");
+
+        if (!acc.isValid()) acc.refresh(b);
+        return acc.output(b.sideToMove);
+    }
+
+    /**
+     * Factory of NNUE evaluators for {@code net}. They attach the network to each board they are
+     * given, which then updates the accumulator itself, so they need no move hooks.
+     */
+    public static Evaluator.Factory factory(NnueNetwork net) {
+        return () -> new Instance(net);
+    }
+
+    private static final class Instance implements Evaluator {
+
+        private final NnueNetwork net;
+
+        Instance(NnueNetwork net) {
+            this.net = net;
+        }
+
+        @Override
+        public void attach(Board board) {
+            if (board.nnue() == null || board.nnue().network() != net) board.setNnue(net);
+        }
+
+        @Override
+        public int evaluate(Board board) {
+            return NnueEvaluator.evaluate(board);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package engine.eval;
+
+import engine.common.Constants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Weights of a small efficiently updatable network: 768 inputs (piece id x square, seen from
+ * each side), one hidden layer of {@link #hidden} clipped-ReLU units per perspective, and a
+ * single output reading both halves, side to move first.
+ *
+ * Weights are int16, quantized by {@link #QA} in the feature layer and {@link #QB} in the output
+ * layer; the output is scaled to centipawns by {@link #SCALE}. The file is little-endian:
+ * <pre>
+ *   int32 magic "NNUE", int32 hidden size (a multiple of 32)
+ *   int16 feature weights [768][hidden]
+ *   int16 feature biases  [hidden]
+ *   int16 output weights  [2][hidden]   (side to move, then opponent)
+ *   int16 output bias                   (scaled by QA * QB)
+ * </pre>
+ * Immutable once loaded, so one network serves every board and thread.
+ */
+public final class NnueNetwork {
+
+    public static final int INPUTS = 768;
+
+    public static final int QA = 255;
+    public static final int QB = 64;
+    public static final int SCALE = 400;
+
+    /** Network file loaded by default, given with -Dchess.nnue; null when not set. */
+    public static final String DEFAULT_FILE = System.getProperty("chess.nnue");
+
+    private static final int MAGIC = 0x45554E4E; // "NNUE" read little-endian
+
+    public final int hidden;
+
+    final short[] featureWeights; // row per input feature
+    final short[] featureBias;
+    final short[] outputWeights;  // side-to-move half, then opponent half
+    final int outputBias;
+
+    private NnueNetwork(int hidden, short[] featureWeights, short[] featureBias, short[] outputWeights, int outputBias) {
+        this.hidden = hidden;
+        this.featureWeights = featureWeights;
+        this.featureBias = featureBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    public static NnueNetwork load(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC) throw new IOException("Not an NNUE network: " + file);
+
+        int hidden = buf.getInt();
+        if (hidden <= 0 || hidden % 32 != 0 || hidden > 4096) {
+            throw new IOException("Unsupported hidden layer size " + hidden + " in " + file);
+        }
+
+        long expected = 2L * ((long) INPUTS * hidden + hidden + 2L * hidden + 1);
+        if (buf.remaining() != expected) {
+            throw new IOException("NNUE network " + file + " has " + buf.remaining() + " bytes of weights, expected " + expected);
+        }
+
+        short[] featureWeights = new short[INPUTS * hidden];
+        short[] featureBias = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        buf.asShortBuffer().get(featureWeights);
+        buf.position(buf.position() + 2 * featureWeights.length);
+        buf.asShortBuffer().get(featureBias);
+        buf.position(buf.position() + 2 * featureBias.length);
+        buf.asShortBuffer().get(outputWeights);
+        buf.position(buf.position() + 2 * outputWeights.length);
+        int outputBias = buf.getShort();
+
+        return new NnueNetwork(hidden, featureWeights, featureBias, outputWeights, outputBias);
+    }
+
+    /**
+     * Input index of {@code piece} on {@code sq} from {@code perspective}'s side. Black sees the
+     * board mirrored vertically with the colors swapped, so both perspectives share the weights.
+     */
+    static int feature(int perspective, int piece, int sq) {
+        return perspective == Constants.WHITE ? 64 * piece + sq : 64 * (piece ^ 1) + (sq ^ 56);
+    }
+}
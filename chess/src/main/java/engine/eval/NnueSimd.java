@@ -0,0 +1,57 @@
+package engine.eval;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels of {@link NnueAccumulator}. Only loaded when the jdk.incubator.vector module
+ * is present (run with {@code --add-modules jdk.incubator.vector}); lengths are multiples of 32,
+ * which covers every species up to 512 bits.
+ */
+final class NnueSimd {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private NnueSimd() {}
+
+    static void add(short[] acc, int off, short[] w, int wOff, int n) {
+        int step = SHORTS.length();
+        for (int i = 0; i < n; i += step) {
+            ShortVector.fromArray(SHORTS, acc, off + i)
+                .add(ShortVector.fromArray(SHORTS, w, wOff + i))
+                .intoArray(acc, off + i);
+        }
+    }
+
+    static void sub(short[] acc, int off, short[] w, int wOff, int n) {
+        int step = SHORTS.length();
+        for (int i = 0; i < n; i += step) {
+            ShortVector.fromArray(SHORTS, acc, off + i)
+                .sub(ShortVector.fromArray(SHORTS, w, wOff + i))
+                .intoArray(acc, off + i);
+        }
+    }
+
+    /** Sum of clamp(acc[i], 0, QA) * w[i] over n lanes, widened to int before multiplying. */
+    static int clippedDot(short[] acc, int off, short[] w, int wOff, int n) {
+        ShortVector zero = ShortVector.zero(SHORTS);
+        ShortVector qa = ShortVector.broadcast(SHORTS, (short) NnueNetwork.QA);
+        IntVector sum = IntVector.zero(INTS);
+
+        int step = SHORTS.length();
+        for (int i = 0; i < n; i += step) {
+            ShortVector x = ShortVector.fromArray(SHORTS, acc, off + i).max(zero).min(qa);
+            ShortVector y = ShortVector.fromArray(SHORTS, w, wOff + i);
+            // same bit size: each half of the short lanes widens into one int vector
+            IntVector x0 = (IntVector) x.convertShape(VectorOperators.S2I, INTS, 0);
+            IntVector y0 = (IntVector) y.convertShape(VectorOperators.S2I, INTS, 0);
+            IntVector x1 = (IntVector) x.convertShape(VectorOperators.S2I, INTS, 1);
+            IntVector y1 = (IntVector) y.convertShape(VectorOperators.S2I, INTS, 1);
+            sum = sum.add(x0.mul(y0)).add(x1.mul(y1));
+        }
+        return sum.reduceLanes(VectorOperators.ADD);
+    }
+}
@@ -0,0 +1,87 @@
+package engine.eval;
+
+/**
+ * Pawn structure cache keyed by {@link engine.board.Board#pawnKey}: the pawn structure score
+ * (white minus black) plus the passed pawns and pawn attacks of both sides, which the rest of
+ * the evaluation reuses. Pawn moves are rare next to piece moves, so nearly every evaluation in
+ * a search finds its entry here.
+ *
+ * Direct-mapped and always-replace, as parallel arrays. Not thread-safe: every evaluator made by
+ * {@link ClassicalEvaluator#factory()} owns one (see {@link ClassicalEvaluator.Instance}), and
+ * the static {@link ClassicalEvaluator#evaluate(engine.board.Board)} uses one per thread.
+ */
+public final class PawnHashTable {
+
+    /** Default size in KB, overridable with -Dchess.pawnHashKB. */
+    public static final int DEFAULT_SIZE_KB = Integer.getInteger("chess.pawnHashKB", 512);
+
+    private static final int ENTRY_SIZE = 36;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final long[] passed;
+    private final long[] attacks; // two per entry: white, black
+
+    private final int mask;
+
+    private long probes;
+    private long hits;
+
+    public PawnHashTable() {
+        this(DEFAULT_SIZE_KB);
+    }
+
+    public PawnHashTable(int sizeKB) {
+        int entries = Integer.highestOneBit(Math.max(1, (int) ((long) sizeKB * 1024 / ENTRY_SIZE)));
+
+        keys = new long[entries];
+        scores = new int[entries];
+        passed = new long[entries];
+        attacks = new long[2 * entries];
+        mask = entries - 1;
+    }
+
+    /**
+     * Slot for {@code pawnKey}. The slot holds this key's data if {@link #hit} says so; otherwise
+     * the caller computes it and {@link #store}s it there.
+     */
+    public int slot(long pawnKey) {
+        return (int) (pawnKey ^ (pawnKey >>> 32)) & mask;
+    }
+
+    public boolean hit(int slot, long pawnKey) {
+        // an empty slot (key 0) holds exactly the data of a position without pawns
+        probes++;
+        if (keys[slot] != pawnKey) return false;
+        hits++;
+        return true;
+    }
+
+    public void store(int slot, long pawnKey, int score, long passedPawns, long whiteAttacks, long blackAttacks) {
+        keys[slot] = pawnKey;
+        scores[slot] = score;
+        passed[slot] = passedPawns;
+        attacks[2 * slot] = whiteAttacks;
+        attacks[2 * slot + 1] = blackAttacks;
+    }
+
+    public int score(int slot) { return scores[slot]; }
+
+    /** Passed pawns of both colors. */
+    public long passedPawns(int slot) { return passed[slot]; }
+
+    public long pawnAttacks(int slot, int side) { return attacks[2 * slot + side]; }
+
+    public int entries() { return keys.length; }
+
+    public long probes() { return probes; }
+
+    public long hits() { return hits; }
+
+    public double hitRate() { return probes == 0 ? 0 : (double) hits / probes; }
+
+    public void resetStats() {
+        probes = 0;
+        hits = 0;
+    }
+}
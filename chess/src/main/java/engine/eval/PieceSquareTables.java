@@ -0,0 +1,37 @@
+package engine.eval;
+
+import engine.common.Constants;
+
+/**
+ * Midgame and endgame piece-square tables per piece id and square, signed white-positive, built
+ * from the per-type tables of {@link EvalParams} (laid out from white's side; black reads them
+ * mirrored), so that Board can keep running sums as pieces come and go.
+ */
+public final class PieceSquareTables {
+
+    private PieceSquareTables() {}
+
+    public static final int[][] MG = new int[12][64];
+    public static final int[][] EG = new int[12][64];
+
+    static {
+        rebuild();
+    }
+
+    /** Refills {@link #MG} and {@link #EG} from the active {@link EvalParams}. */
+    static void rebuild() {
+        int[] params = EvalParams.ACTIVE;
+
+        for (int piece = Constants.W_PAWN; piece <= Constants.B_KING; piece++) {
+            boolean white = (piece & 1) == Constants.WHITE;
+            int type = piece >>> 1;
+            for (int sq = 0; sq < 64; sq++) {
+                int idx = 64 * type + (white ? sq : sq ^ 56);
+                int mg = params[EvalParams.PST_MG + idx];
+                int eg = params[EvalParams.PST_EG + idx];
+                MG[piece][sq] = white ? mg : -mg;
+                EG[piece][sq] = white ? eg : -eg;
+            }
+        }
+    }
+}
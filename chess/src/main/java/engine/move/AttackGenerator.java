@@ -3,46 +3,72 @@ package engine.move;
 import engine.board.Board;
 import engine.common.BitHelper;
 import engine.common.Constants;
+import engine.common.SliderAttacks;
 
 public final class AttackGenerator {
 
     public static boolean isSquareAttacked(Board board, int sq, int bySide) {
         if (sq < 0 || sq >= 64) return false;
 
-        final boolean white = bySide == Constants.WHITE;
-        final long squareBB = 1L << sq;
+        if (board.hasAttackMaps()) return (board.attackedBy[bySide] & (1L << sq)) != 0;
+
+        final long[] pieces = board.pieces;
         final long occ = board.allPieces;
 
-        long pawns = white ? board.whitePawns : board.blackPawns;
-        if (white) {
-            if (((pawns << 7) & Constants.notHFile & squareBB) != 0) return true;
-            if (((pawns << 9) & Constants.notAFile & squareBB) != 0) return true;
-        } else {
-            if (((pawns >>> 7) & Constants.notAFile & squareBB) != 0) return true;
-            if (((pawns >>> 9) & Constants.notHFile & squareBB) != 0) return true;
-        }
+        // a square is attacked by a pawn of bySide iff a pawn of the other side would attack that pawn
+        if ((Constants.PAWN_ATTACKS[bySide ^ 1][sq] & pieces[Constants.W_PAWN + bySide]) != 0) return true;
 
-        long knights = white ? board.whiteKnights : board.blackKnights;
-        if ((Constants.KNIGHT_MASKS[sq] & knights) != 0) return true;
+        if ((Constants.KNIGHT_MASKS[sq] & pieces[Constants.W_KNIGHT + bySide]) != 0) return true;
 
-        long king = white ? board.whiteKing : board.blackKing;
-        if ((Constants.KING_MASKS[sq] & king) != 0) return true;
+        if ((Constants.KING_MASKS[sq] & pieces[Constants.W_KING + bySide]) != 0) return true;
 
-        long queens = white ? board.whiteQueens : board.blackQueens;
-        long bishopsQueens = (white ? board.whiteBishops : board.blackBishops) | queens;
+        long queens = pieces[Constants.W_QUEEN + bySide];
+        long bishopsQueens = pieces[Constants.W_BISHOP + bySide] | queens;
 
-        long diagAtk =
-            BitHelper.hyperbolaQuintessence(occ, Constants.DIAG_MASKS[sq], sq) |
-                BitHelper.hyperbolaQuintessence(occ, Constants.ANTIDIAG_MASKS[sq], sq);
+        long diagAtk = SliderAttacks.bishopAttacks(sq, occ);
 
         if ((diagAtk & bishopsQueens) != 0) return true;
 
-        long rooksQueens = (white ? board.whiteRooks : board.blackRooks) | queens;
+        long rooksQueens = pieces[Constants.W_ROOK + bySide] | queens;
 
-        long orthoAtk =
-            BitHelper.hyperbolaQuintessence(occ, Constants.RANK_MASKS[sq], sq) |
-                BitHelper.hyperbolaQuintessence(occ, Constants.FILE_MASKS[sq], sq);
+        long orthoAtk = SliderAttacks.rookAttacks(sq, occ);
 
         return (orthoAtk & rooksQueens) != 0;
     }
+
+    /** Pieces of both colours attacking {@code sq}, with sliders seeing through {@code occupancy}. */
+    public static long attackersTo(Board board, int sq, long occupancy) {
+        final long[] pieces = board.pieces;
+
+        return (Constants.PAWN_ATTACKS[Constants.BLACK][sq] & pieces[Constants.W_PAWN])
+            | (Constants.PAWN_ATTACKS[Constants.WHITE][sq] & pieces[Constants.B_PAWN])
+            | (Constants.KNIGHT_MASKS[sq] & (pieces[Constants.W_KNIGHT] | pieces[Constants.B_KNIGHT]))
+            | (Constants.KING_MASKS[sq] & (pieces[Constants.W_KING] | pieces[Constants.B_KING]))
+            | (SliderAttacks.bishopAttacks(sq, occupancy) & board.diagonalSliders())
+            | (SliderAttacks.rookAttacks(sq, occupancy) & board.orthogonalSliders());
+    }
+
+    /**
+     * Pieces of either colour that are the only piece between {@code sq} and a slider of
+     * {@code sniperSide} aimed at it. With sq a king: the pinned pieces of the king's side, and
+     * the discovered-check candidates of the sniper side.
+     */
+    public static long sliderBlockers(Board board, int sq, int sniperSide, long occupancy) {
+        long queens = board.pieces[Constants.W_QUEEN + sniperSide];
+        long bishopsQueens = board.pieces[Constants.W_BISHOP + sniperSide] | queens;
+        long rooksQueens   = board.pieces[Constants.W_ROOK + sniperSide] | queens;
+
+        long snipers = (SliderAttacks.bishopAttacks(sq, 0) & bishopsQueens)
+            | (SliderAttacks.rookAttacks(sq, 0) & rooksQueens);
+
+        long blockers = 0;
+        while (snipers != 0) {
+            int sniper = BitHelper.lsb(snipers);
+            snipers &= snipers - 1;
+
+            long between = Constants.BETWEEN[sq][sniper] & occupancy;
+            if (between != 0 && (between & (between - 1)) == 0) blockers |= between;
+        }
+        return blockers;
+    }
 }
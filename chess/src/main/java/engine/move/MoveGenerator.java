@@ -3,6 +3,7 @@ package engine.move;
 import engine.board.Board;
 import engine.common.BitHelper;
 import engine.common.Constants;
+import engine.common.SliderAttacks;
 
 public class MoveGenerator {
 
@@ -20,10 +21,398 @@ public class MoveGenerator {
     }
 
 
+    /**
+     * Generates only legal moves. Checkers, pinned pieces and the check-block mask are computed
+     * once up front, so callers never need the make / king-attacked / unmake filter.
+     */
+    public static int generateLegalMoves(Board board, int[] moves) {
+        return generateLegal(board, moves, GEN_ALL);
+    }
+
+    /** Legal subset of {@link #generateCaptures}: captures, capture-promotions and en passant. */
+    public static int generateLegalCaptures(Board board, int[] moves) {
+        return generateLegal(board, moves, GEN_CAPTURES);
+    }
+
+    /** Legal non-captures: quiet moves, pushes, quiet promotions and castling. */
+    public static int generateLegalQuiets(Board board, int[] moves) {
+        return generateLegal(board, moves, GEN_QUIETS);
+    }
+
+    /**
+     * Legal replies to a check: king steps to safe squares and, against a single checker, captures
+     * of the checker and interpositions on the checking ray. Pinned pieces are skipped outright,
+     * since no piece can leave its pin line and still land on the check ray.
+     * The side to move must be in check.
+     */
+    public static int generateEvasions(Board board, int[] moves) {
+        final int us = board.sideToMove;
+        final boolean white = us == Constants.WHITE;
+
+        final long own = board.occupancy[us];
+        final long opp = board.occupancy[us ^ 1];
+        final long occ = board.allPieces;
+        final int kingSq = white ? board.whiteKingSq : board.blackKingSq;
+
+        final long checkers = board.checkers();
+        int mc = generateLegalKingMoves(board, moves, 0, kingSq, ~own, checkers);
+
+        if (checkers == 0 || BitHelper.popcount(checkers) > 1) return mc;
+
+        final long block = checkers | Constants.BETWEEN[kingSq][BitHelper.lsb(checkers)];
+        final long free = ~board.pinned();
+
+        long knights = board.pieces[Constants.W_KNIGHT + us] & free;
+        while (knights != 0) {
+            int from = BitHelper.lsb(knights);
+            knights &= knights - 1;
+            mc = emitTargets(moves, mc, from, Constants.KNIGHT_MASKS[from] & block, opp);
+        }
+
+        long bb = (board.pieces[Constants.W_BISHOP + us] | board.pieces[Constants.W_QUEEN + us]) & free;
+        while (bb != 0) {
+            int from = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            mc = emitTargets(moves, mc, from, SliderAttacks.bishopAttacks(from, occ) & block, opp);
+        }
+
+        bb = (board.pieces[Constants.W_ROOK + us] | board.pieces[Constants.W_QUEEN + us]) & free;
+        while (bb != 0) {
+            int from = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            mc = emitTargets(moves, mc, from, SliderAttacks.rookAttacks(from, occ) & block, opp);
+        }
+
+        long pawns = board.pieces[Constants.W_PAWN + us] & free;
+        mc = generateMaskedPawnMoves(board, moves, mc, pawns, block, GEN_ALL);
+        return generateLegalEnPassant(board, moves, mc, pawns, kingSq, block);
+    }
+
+    /**
+     * Legal non-capturing, non-promoting moves that give check. Direct checks come from the
+     * squares each piece type would attack the enemy king from; discovered checks from our pieces
+     * that are the only blocker between one of our sliders and that king, moving off the line.
+     * Castling is not included. The side to move must not be in check.
+     */
+    public static int generateQuietChecks(Board board, int[] moves) {
+        final int us = board.sideToMove;
+        final boolean white = us == Constants.WHITE;
+
+        final long occ = board.allPieces;
+        final long empty = ~occ;
+        final int kingSq = white ? board.whiteKingSq : board.blackKingSq;
+        final int enemyKingSq = white ? board.blackKingSq : board.whiteKingSq;
+
+        final long pinned = board.pinned();
+        final long discover = AttackGenerator.sliderBlockers(board, enemyKingSq, us, occ)
+            & board.occupancy[us];
+
+        final long knightChecks = Constants.KNIGHT_MASKS[enemyKingSq];
+        final long diagChecks = SliderAttacks.bishopAttacks(enemyKingSq, occ);
+        final long orthoChecks = SliderAttacks.rookAttacks(enemyKingSq, occ);
+        final long pawnChecks = BitHelper.attacks(us ^ 1, 1L << enemyKingSq);
+
+        int mc = 0;
+
+        long pieces = board.pieces[Constants.W_KNIGHT + us] & ~pinned;
+        while (pieces != 0) {
+            int from = BitHelper.lsb(pieces);
+            pieces &= pieces - 1;
+            long t = Constants.KNIGHT_MASKS[from] & empty & checkMask(from, knightChecks, discover, enemyKingSq);
+            mc = emitTargets(moves, mc, from, t, 0L);
+        }
+
+        long queens = board.pieces[Constants.W_QUEEN + us];
+        pieces = board.pieces[Constants.W_BISHOP + us] | queens;
+        while (pieces != 0) {
+            int from = BitHelper.lsb(pieces);
+            pieces &= pieces - 1;
+            long direct = ((1L << from) & queens) != 0 ? diagChecks | orthoChecks : diagChecks;
+            long t = SliderAttacks.bishopAttacks(from, occ) & empty & checkMask(from, direct, discover, enemyKingSq);
+            if ((pinned & (1L << from)) != 0) t &= Constants.LINE[kingSq][from];
+            mc = emitTargets(moves, mc, from, t, 0L);
+        }
+
+        pieces = board.pieces[Constants.W_ROOK + us] | queens;
+        while (pieces != 0) {
+            int from = BitHelper.lsb(pieces);
+            pieces &= pieces - 1;
+            long direct = ((1L << from) & queens) != 0 ? diagChecks | orthoChecks : orthoChecks;
+            long t = SliderAttacks.rookAttacks(from, occ) & empty & checkMask(from, direct, discover, enemyKingSq);
+            if ((pinned & (1L << from)) != 0) t &= Constants.LINE[kingSq][from];
+            mc = emitTargets(moves, mc, from, t, 0L);
+        }
+
+        long promoRank = white ? Constants.RANK_8 : Constants.RANK_1;
+        pieces = board.pieces[Constants.W_PAWN + us];
+        while (pieces != 0) {
+            int from = BitHelper.lsb(pieces);
+            pieces &= pieces - 1;
+            long bb = 1L << from;
+            long single = white ? BitHelper.whiteSinglePush(bb, empty) : BitHelper.blackSinglePush(bb, empty);
+            long dbl    = white ? BitHelper.whiteDoublePush(bb, empty) : BitHelper.blackDoublePush(bb, empty);
+
+            long mask = ~promoRank & checkMask(from, pawnChecks, discover, enemyKingSq);
+            if ((pinned & bb) != 0) mask &= Constants.LINE[kingSq][from];
+
+            if ((single & mask) != 0) moves[mc++] = Move.encode(from, BitHelper.lsb(single), 0, Constants.QUIET);
+            if ((dbl & mask) != 0) moves[mc++] = Move.encode(from, BitHelper.lsb(dbl), 0, Constants.DOUBLE_PAWN_PUSH);
+        }
+
+        // The king can only give a discovered check
+        if ((discover & (1L << kingSq)) != 0) {
+            long occNoKing = occ & ~(1L << kingSq);
+            long t = Constants.KING_MASKS[kingSq] & empty & ~Constants.LINE[enemyKingSq][kingSq];
+            while (t != 0) {
+                int to = BitHelper.lsb(t);
+                t &= t - 1;
+                if (attackersOf(board, to, us ^ 1, occNoKing) != 0) continue;
+                moves[mc++] = Move.encode(kingSq, to, 0, Constants.QUIET);
+            }
+        }
+
+        return mc;
+    }
+
+    /** Destinations from which the piece on {@code from} checks, directly or by uncovering a slider. */
+    private static long checkMask(int from, long direct, long discover, int enemyKingSq) {
+        return (discover & (1L << from)) != 0 ? direct | ~Constants.LINE[enemyKingSq][from] : direct;
+    }
+
+    private static final int GEN_ALL = 0;
+    private static final int GEN_CAPTURES = 1;
+    private static final int GEN_QUIETS = 2;
+
+    private static int generateLegal(Board board, int[] moves, int mode) {
+        final int us = board.sideToMove;
+        final boolean white = us == Constants.WHITE;
+
+        final long own = board.occupancy[us];
+        final long opp = board.occupancy[us ^ 1];
+        final long occ = board.allPieces;
+        final int kingSq = white ? board.whiteKingSq : board.blackKingSq;
+
+        final long checkers = board.checkers();
+        final long targets = switch (mode) {
+            case GEN_CAPTURES -> opp;
+            case GEN_QUIETS -> ~occ;
+            default -> ~own;
+        };
+
+        int mc = generateLegalKingMoves(board, moves, 0, kingSq, targets, checkers);
+
+        // Double check: only the king may move
+        if (BitHelper.popcount(checkers) > 1) return mc;
+
+        long checkMask = checkers == 0 ? ~0L : checkers | Constants.BETWEEN[kingSq][BitHelper.lsb(checkers)];
+        long pinned = board.pinned();
+
+        // Knights: a pinned knight can never move
+        long knights = board.pieces[Constants.W_KNIGHT + us] & ~pinned;
+        while (knights != 0) {
+            int from = BitHelper.lsb(knights);
+            knights &= knights - 1;
+            mc = emitTargets(moves, mc, from, Constants.KNIGHT_MASKS[from] & targets & checkMask, opp);
+        }
+
+        long queens = board.pieces[Constants.W_QUEEN + us];
+        long bishopsQueens = board.pieces[Constants.W_BISHOP + us] | queens;
+        long rooksQueens   = board.pieces[Constants.W_ROOK + us] | queens;
+
+        long bb = bishopsQueens;
+        while (bb != 0) {
+            int from = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            long t = SliderAttacks.bishopAttacks(from, occ) & targets & checkMask;
+            if ((pinned & (1L << from)) != 0) t &= Constants.LINE[kingSq][from];
+            mc = emitTargets(moves, mc, from, t, opp);
+        }
+
+        bb = rooksQueens;
+        while (bb != 0) {
+            int from = BitHelper.lsb(bb);
+            bb &= bb - 1;
+            long t = SliderAttacks.rookAttacks(from, occ) & targets & checkMask;
+            if ((pinned & (1L << from)) != 0) t &= Constants.LINE[kingSq][from];
+            mc = emitTargets(moves, mc, from, t, opp);
+        }
+
+        // Pawns: unpinned ones in bulk, pinned ones (only possible when not in check) one by one
+        long pawns = board.pieces[Constants.W_PAWN + us];
+        mc = generateMaskedPawnMoves(board, moves, mc, pawns & ~pinned, checkMask, mode);
+
+        if (checkers == 0) {
+            long pinnedPawns = pawns & pinned;
+            while (pinnedPawns != 0) {
+                int from = BitHelper.lsb(pinnedPawns);
+                pinnedPawns &= pinnedPawns - 1;
+                mc = generateMaskedPawnMoves(board, moves, mc, 1L << from, Constants.LINE[kingSq][from], mode);
+            }
+        }
+
+        if (mode != GEN_QUIETS) {
+            mc = generateLegalEnPassant(board, moves, mc, pawns, kingSq, checkMask);
+        }
+
+        if (mode != GEN_CAPTURES && checkers == 0) {
+            mc = generateCastling(board, moves, mc);
+        }
+
+        return mc;
+    }
+
+    /** King steps within {@code targets} that do not walk into an attack. No castling. */
+    private static int generateLegalKingMoves(Board board, int[] moves, int mc, int kingSq, long targets, long checkers) {
+        final int them = board.sideToMove ^ 1;
+        final long opp = board.occupancy[them];
+
+        long kingTargets = Constants.KING_MASKS[kingSq] & targets;
+
+        if (board.hasAttackMaps()) {
+            // the maps stop at the king, so add the squares behind it on every checking slider's line
+            long sliderCheckers = checkers & ~(board.pieces[Constants.W_PAWN + them] | board.pieces[Constants.W_KNIGHT + them]);
+            long unsafe = board.attackedBy[them];
+            while (sliderCheckers != 0) {
+                int c = BitHelper.lsb(sliderCheckers);
+                sliderCheckers &= sliderCheckers - 1;
+                unsafe |= Constants.LINE[kingSq][c] & ~(1L << c);
+            }
+            return emitTargets(moves, mc, kingSq, kingTargets & ~unsafe, opp);
+        }
+
+        // the king itself is lifted off the board so it cannot hide behind its own shadow
+        long occNoKing = board.allPieces & ~(1L << kingSq);
+        while (kingTargets != 0) {
+            int to = BitHelper.lsb(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (attackersOf(board, to, them, occNoKing) != 0) continue;
+            int flag = ((1L << to) & opp) != 0 ? Constants.CAPTURE : Constants.QUIET;
+            moves[mc++] = Move.encode(kingSq, to, 0, flag);
+        }
+        return mc;
+    }
+
+    private static int emitTargets(int[] moves, int mc, int from, long targets, long opp) {
+        while (targets != 0) {
+            int to = BitHelper.lsb(targets);
+            targets &= targets - 1;
+            int flag = ((1L << to) & opp) != 0 ? Constants.CAPTURE : Constants.QUIET;
+            moves[mc++] = Move.encode(from, to, 0, flag);
+        }
+        return mc;
+    }
+
+    /** Pushes, double pushes, captures and promotions whose destination lies in {@code mask}. No en passant. */
+    private static int generateMaskedPawnMoves(Board board, int[] moves, int mc, long pawns, long mask, int mode) {
+        if (pawns == 0) return mc;
+
+        int us = board.sideToMove;
+        boolean white = us == Constants.WHITE;
+        long opp = board.occupancy[us ^ 1];
+        long empty = ~board.allPieces;
+        long promoRank = white ? Constants.RANK_8 : Constants.RANK_1;
+
+        if (mode != GEN_CAPTURES) {
+            long single = white ? BitHelper.whiteSinglePush(pawns, empty) : BitHelper.blackSinglePush(pawns, empty);
+            long dbl    = white ? BitHelper.whiteDoublePush(pawns, empty) : BitHelper.blackDoublePush(pawns, empty);
+            single &= mask;
+            dbl &= mask;
+
+            long promos = single & promoRank;
+            long quiet  = single & ~promoRank;
+
+            while (promos != 0) {
+                int to = BitHelper.lsb(promos);
+                promos &= promos - 1;
+                int from = white ? to - 8 : to + 8;
+                moves[mc++] = Move.encode(from, to, Constants.W_QUEEN + us, Constants.PROMO_QUEEN);
+                moves[mc++] = Move.encode(from, to, Constants.W_ROOK + us, Constants.PROMO_ROOK);
+                moves[mc++] = Move.encode(from, to, Constants.W_BISHOP + us, Constants.PROMO_BISHOP);
+                moves[mc++] = Move.encode(from, to, Constants.W_KNIGHT + us, Constants.PROMO_KNIGHT);
+            }
+
+            while (quiet != 0) {
+                int to = BitHelper.lsb(quiet);
+                quiet &= quiet - 1;
+                moves[mc++] = Move.encode(white ? to - 8 : to + 8, to, 0, Constants.QUIET);
+            }
+
+            while (dbl != 0) {
+                int to = BitHelper.lsb(dbl);
+                dbl &= dbl - 1;
+                moves[mc++] = Move.encode(white ? to - 16 : to + 16, to, 0, Constants.DOUBLE_PAWN_PUSH);
+            }
+        }
+
+        if (mode == GEN_QUIETS) return mc;
+
+        long left  = (white ? BitHelper.whiteAttacksLeft(pawns)  : BitHelper.blackAttacksLeft(pawns))  & opp & mask;
+        long right = (white ? BitHelper.whiteAttacksRight(pawns) : BitHelper.blackAttacksRight(pawns)) & opp & mask;
+
+        while (left != 0) {
+            int to = BitHelper.lsb(left);
+            left &= left - 1;
+            int from = white ? to - 7 : to + 9;
+            if (((1L << to) & promoRank) != 0) mc = addPromoCaps(moves, mc, from, to, us);
+            else moves[mc++] = Move.encode(from, to, 0, Constants.CAPTURE);
+        }
+
+        while (right != 0) {
+            int to = BitHelper.lsb(right);
+            right &= right - 1;
+            int from = white ? to - 9 : to + 7;
+            if (((1L << to) & promoRank) != 0) mc = addPromoCaps(moves, mc, from, to, us);
+            else moves[mc++] = Move.encode(from, to, 0, Constants.CAPTURE);
+        }
+
+        return mc;
+    }
+
+    /**
+     * En passant removes two pawns from the same rank at once, which can expose the king along
+     * that rank even when neither pawn is pinned on its own. Each candidate is therefore checked
+     * against the enemy sliders with the post-capture occupancy.
+     */
+    private static int generateLegalEnPassant(Board board, int[] moves, int mc, long pawns, int kingSq, long checkMask) {
+        int ep = board.enPassantSquare;
+        if (ep == -1) return mc;
+
+        int them = board.sideToMove ^ 1;
+        int capSq = them == Constants.BLACK ? ep - 8 : ep + 8;
+        long epBB = 1L << ep;
+        long capBB = 1L << capSq;
+
+        if ((checkMask & (epBB | capBB)) == 0) return mc;
+
+        long candidates = pawns & Constants.PAWN_ATTACKS[them][ep];
+
+        long enemyQ  = board.pieces[Constants.W_QUEEN + them];
+        long enemyBQ = board.pieces[Constants.W_BISHOP + them] | enemyQ;
+        long enemyRQ = board.pieces[Constants.W_ROOK + them] | enemyQ;
+
+        while (candidates != 0) {
+            int from = BitHelper.lsb(candidates);
+            candidates &= candidates - 1;
+
+            long occ = (board.allPieces ^ (1L << from) ^ capBB) | epBB;
+            if ((SliderAttacks.rookAttacks(kingSq, occ) & enemyRQ) != 0) continue;
+            if ((SliderAttacks.bishopAttacks(kingSq, occ) & enemyBQ) != 0) continue;
+
+            moves[mc++] = Move.encode(from, ep, 0, Constants.EN_PASSANT);
+        }
+        return mc;
+    }
+
+    private static long attackersOf(Board board, int sq, int bySide, long occ) {
+        return AttackGenerator.attackersTo(board, sq, occ)
+            & board.occupancy[bySide];
+    }
+
+
     public static int generatePawnMoves(Board board, int[] moves, int mc) {
         int us = board.sideToMove;
-        long pawns = us == Constants.WHITE ? board.whitePawns : board.blackPawns;
-        long opp   = us == Constants.WHITE ? board.blackPieces : board.whitePieces;
+        long pawns = board.pieces[Constants.W_PAWN + us];
+        long opp   = board.occupancy[us ^ 1];
         long empty = ~board.allPieces;
 
         long promoRank = us == Constants.WHITE ? Constants.RANK_8 : Constants.RANK_1;
@@ -140,9 +529,9 @@ public class MoveGenerator {
 
 
     public static int generateKnightMoves(Board board, int[] moves, int mc) {
-        long knights = board.sideToMove == Constants.WHITE ? board.whiteKnights : board.blackKnights;
-        long own     = board.sideToMove == Constants.WHITE ? board.whitePieces  : board.blackPieces;
-        long opp     = board.sideToMove == Constants.WHITE ? board.blackPieces  : board.whitePieces;
+        long knights = board.pieces[Constants.W_KNIGHT + board.sideToMove];
+        long own     = board.occupancy[board.sideToMove];
+        long opp     = board.occupancy[board.sideToMove ^ 1];
 
         while (knights != 0) {
             int from = BitHelper.lsb(knights);
@@ -162,27 +551,27 @@ public class MoveGenerator {
 
     public static int generateBishopMoves(Board board, int[] moves, int mc) {
         return generateSlidingMoves(board, moves, mc,
-            board.sideToMove == Constants.WHITE ? board.whiteBishops : board.blackBishops,
+            board.pieces[Constants.W_BISHOP + board.sideToMove],
             true, false);
     }
 
     public static int generateRookMoves(Board board, int[] moves, int mc) {
         return generateSlidingMoves(board, moves, mc,
-            board.sideToMove == Constants.WHITE ? board.whiteRooks : board.blackRooks,
+            board.pieces[Constants.W_ROOK + board.sideToMove],
             false, true);
     }
 
     public static int generateQueenMoves(Board board, int[] moves, int mc) {
         return generateSlidingMoves(board, moves, mc,
-            board.sideToMove == Constants.WHITE ? board.whiteQueens : board.blackQueens,
+            board.pieces[Constants.W_QUEEN + board.sideToMove],
             true, true);
     }
 
     private static int generateSlidingMoves(Board board, int[] moves, int mc,
         long pieces, boolean diag, boolean ortho) {
 
-        long own = board.sideToMove == Constants.WHITE ? board.whitePieces : board.blackPieces;
-        long opp = board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces;
+        long own = board.occupancy[board.sideToMove];
+        long opp = board.occupancy[board.sideToMove ^ 1];
 
         while (pieces != 0) {
             int from = BitHelper.lsb(pieces);
@@ -205,9 +594,9 @@ public class MoveGenerator {
     }
 
     public static int generateKingMoves(Board board, int[] moves, int moveCount){
-        long king = board.sideToMove == Constants.WHITE ? board.whiteKing : board.blackKing;
-        long own  = board.sideToMove == Constants.WHITE ? board.whitePieces : board.blackPieces;
-        long opp  = board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces;
+        long king = board.pieces[Constants.W_KING + board.sideToMove];
+        long own  = board.occupancy[board.sideToMove];
+        long opp  = board.occupancy[board.sideToMove ^ 1];
 
         int from = BitHelper.lsb(king);
         long targets = Constants.KING_MASKS[from] & ~own;
@@ -222,64 +611,176 @@ public class MoveGenerator {
             moves[moveCount++] = Move.encode(from, to, 0, flag);
         }
 
+        return generateCastling(board, moves, moveCount);
+    }
 
-        // Castling
+    private static int generateCastling(Board board, int[] moves, int moveCount) {
         if (board.sideToMove == Constants.WHITE) {
-            if ((board.castlingRights & Constants.WHITE_KINGSIDE) != 0) {
-                long emptyMask = (1L << Constants.F1) | (1L << Constants.G1);
-                if ((board.allPieces & emptyMask) == 0) {
-                    if (!AttackGenerator.isSquareAttacked(board, Constants.E1, Constants.BLACK) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.F1, Constants.BLACK) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.G1, Constants.BLACK)) {
-                        moves[moveCount++] = Move.encode(Constants.E1, Constants.G1, 0, Constants.KING_CASTLE);
-                    }
+            if (canCastle(board, Constants.WHITE_KINGSIDE))
+                moves[moveCount++] = Move.encode(Constants.E1, Constants.G1, 0, Constants.KING_CASTLE);
+            if (canCastle(board, Constants.WHITE_QUEENSIDE))
+                moves[moveCount++] = Move.encode(Constants.E1, Constants.C1, 0, Constants.QUEEN_CASTLE);
+        } else {
+            if (canCastle(board, Constants.BLACK_KINGSIDE))
+                moves[moveCount++] = Move.encode(Constants.E8, Constants.G8, 0, Constants.KING_CASTLE);
+            if (canCastle(board, Constants.BLACK_QUEENSIDE))
+                moves[moveCount++] = Move.encode(Constants.E8, Constants.C8, 0, Constants.QUEEN_CASTLE);
+        }
+
+        return moveCount;
+    }
+
+    private static boolean canCastle(Board board, int right) {
+        if ((board.castlingRights & right) == 0) return false;
+
+        return switch (right) {
+            case Constants.WHITE_KINGSIDE -> castlePathClear(board,
+                (1L << Constants.F1) | (1L << Constants.G1),
+                Constants.E1, Constants.F1, Constants.G1, Constants.BLACK);
+            case Constants.WHITE_QUEENSIDE -> castlePathClear(board,
+                (1L << Constants.B1) | (1L << Constants.C1) | (1L << Constants.D1),
+                Constants.E1, Constants.D1, Constants.C1, Constants.BLACK);
+            case Constants.BLACK_KINGSIDE -> castlePathClear(board,
+                (1L << Constants.F8) | (1L << Constants.G8),
+                Constants.E8, Constants.F8, Constants.G8, Constants.WHITE);
+            default -> castlePathClear(board,
+                (1L << Constants.B8) | (1L << Constants.C8) | (1L << Constants.D8),
+                Constants.E8, Constants.D8, Constants.C8, Constants.WHITE);
+        };
+    }
+
+    private static boolean castlePathClear(Board board, long emptyMask, int kingSq, int passSq, int destSq, int them) {
+        return (board.allPieces & emptyMask) == 0
+            && !AttackGenerator.isSquareAttacked(board, kingSq, them)
+            && !AttackGenerator.isSquareAttacked(board, passSq, them)
+            && !AttackGenerator.isSquareAttacked(board, destSq, them);
+    }
+
+    /**
+     * Full legality test for a single move that did not come from the generator (TT move, killers).
+     * Checks that the encoding matches what the generator would emit in this position, then that
+     * our king is not attacked once the move's occupancy change is applied.
+     */
+    public static boolean isLegal(Board board, int move) {
+        if (move == 0) return false;
+
+        final int us = board.sideToMove;
+        final int them = us ^ 1;
+        final boolean white = us == Constants.WHITE;
+
+        final int from = Move.from(move);
+        final int to = Move.to(move);
+        final int flag = Move.flags(move);
+        final int promo = Move.promo(move);
+
+        final int piece = board.getPieceOn(from);
+        if (piece == -1 || (piece & 1) != us) return false;
+
+        final int target = board.getPieceOn(to);
+        if (target != -1 && ((target & 1) == us || target == Constants.W_KING || target == Constants.B_KING)) return false;
+
+        final long occ = board.allPieces;
+        final long toBB = 1L << to;
+        final boolean isPromo = flag >= Constants.PROMO_KNIGHT;
+
+        if (isPromo) {
+            int expected = promoPieceFor(flag, white);
+            if (promo != expected) return false;
+        } else if (promo != 0) {
+            return false;
+        }
+
+        long capturedBB = target != -1 ? toBB : 0;
+
+        if (piece == Constants.W_PAWN || piece == Constants.B_PAWN) {
+            int dir = white ? 8 : -8;
+            long promoRank = white ? Constants.RANK_8 : Constants.RANK_1;
+            long pawnAtt = Constants.PAWN_ATTACKS[us][from];
+            boolean lastRank = (toBB & promoRank) != 0;
+
+            switch (flag) {
+                case Constants.QUIET -> {
+                    if (to != from + dir || target != -1 || lastRank) return false;
                 }
-            }
-            if ((board.castlingRights & Constants.WHITE_QUEENSIDE) != 0) {
-                long emptyMask = (1L << Constants.B1) | (1L << Constants.C1) | (1L << Constants.D1);
-                if ((board.allPieces & emptyMask) == 0) {
-                    if (!AttackGenerator.isSquareAttacked(board, Constants.E1, Constants.BLACK) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.D1, Constants.BLACK) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.C1, Constants.BLACK)) {
-                        moves[moveCount++] = Move.encode(Constants.E1, Constants.C1, 0, Constants.QUEEN_CASTLE);
-                    }
+                case Constants.DOUBLE_PAWN_PUSH -> {
+                    long startRank = white ? Constants.RANK_2 : Constants.RANK_7;
+                    if (((1L << from) & startRank) == 0 || to != from + 2 * dir) return false;
+                    if ((occ & ((1L << (from + dir)) | toBB)) != 0) return false;
+                }
+                case Constants.CAPTURE -> {
+                    if (target == -1 || (pawnAtt & toBB) == 0 || lastRank) return false;
                 }
+                case Constants.EN_PASSANT -> {
+                    if (to != board.enPassantSquare || (pawnAtt & toBB) == 0) return false;
+                    capturedBB = 1L << (white ? to - 8 : to + 8);
+                }
+                case Constants.PROMO_KNIGHT, Constants.PROMO_BISHOP, Constants.PROMO_ROOK, Constants.PROMO_QUEEN -> {
+                    if (to != from + dir || target != -1 || !lastRank) return false;
+                }
+                case Constants.PROMO_KNIGHT_CAPTURE, Constants.PROMO_BISHOP_CAPTURE,
+                     Constants.PROMO_ROOK_CAPTURE, Constants.PROMO_QUEEN_CAPTURE -> {
+                    if (target == -1 || (pawnAtt & toBB) == 0 || !lastRank) return false;
+                }
+                default -> { return false; }
             }
         } else {
-            if ((board.castlingRights & Constants.BLACK_KINGSIDE) != 0) {
-                long emptyMask = (1L << Constants.F8) | (1L << Constants.G8);
-                if ((board.allPieces & emptyMask) == 0) {
-                    if (!AttackGenerator.isSquareAttacked(board, Constants.E8, Constants.WHITE) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.F8, Constants.WHITE) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.G8, Constants.WHITE)) {
-                        moves[moveCount++] = Move.encode(Constants.E8, Constants.G8, 0, Constants.KING_CASTLE);
-                    }
-                }
+            if (isPromo) return false;
+
+            if (flag == Constants.KING_CASTLE || flag == Constants.QUEEN_CASTLE) {
+                if (piece != Constants.W_KING + us) return false;
+                int right = white
+                    ? (flag == Constants.KING_CASTLE ? Constants.WHITE_KINGSIDE : Constants.WHITE_QUEENSIDE)
+                    : (flag == Constants.KING_CASTLE ? Constants.BLACK_KINGSIDE : Constants.BLACK_QUEENSIDE);
+                int kingFrom = white ? Constants.E1 : Constants.E8;
+                int kingTo = flag == Constants.KING_CASTLE
+                    ? (white ? Constants.G1 : Constants.G8)
+                    : (white ? Constants.C1 : Constants.C8);
+                return from == kingFrom && to == kingTo && canCastle(board, right);
             }
-            if ((board.castlingRights & Constants.BLACK_QUEENSIDE) != 0) {
-                long emptyMask = (1L << Constants.B8) | (1L << Constants.C8) | (1L << Constants.D8);
-                if ((board.allPieces & emptyMask) == 0) {
-                    if (!AttackGenerator.isSquareAttacked(board, Constants.E8, Constants.WHITE) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.D8, Constants.WHITE) &&
-                            !AttackGenerator.isSquareAttacked(board, Constants.C8, Constants.WHITE)) {
-                        moves[moveCount++] = Move.encode(Constants.E8, Constants.C8, 0, Constants.QUEEN_CASTLE);
-                    }
-                }
+
+            if (flag == Constants.QUIET) {
+                if (target != -1) return false;
+            } else if (flag == Constants.CAPTURE) {
+                if (target == -1) return false;
+            } else {
+                return false;
+            }
+
+            long reach = switch (piece) {
+                case Constants.W_KNIGHT, Constants.B_KNIGHT -> Constants.KNIGHT_MASKS[from];
+                case Constants.W_BISHOP, Constants.B_BISHOP -> SliderAttacks.bishopAttacks(from, occ);
+                case Constants.W_ROOK, Constants.B_ROOK -> SliderAttacks.rookAttacks(from, occ);
+                case Constants.W_QUEEN, Constants.B_QUEEN -> SliderAttacks.queenAttacks(from, occ);
+                default -> Constants.KING_MASKS[from];
+            };
+            if ((reach & toBB) == 0) return false;
+
+            if (piece == Constants.W_KING || piece == Constants.B_KING) {
+                return (attackersOf(board, to, them, occ & ~(1L << from)) & ~capturedBB) == 0;
             }
         }
 
-        return moveCount;
+        int kingSq = white ? board.whiteKingSq : board.blackKingSq;
+        long occAfter = (occ & ~(1L << from) & ~capturedBB) | toBB;
+        return (attackersOf(board, kingSq, them, occAfter) & ~capturedBB) == 0;
+    }
+
+    private static int promoPieceFor(int flag, boolean white) {
+        return switch (flag) {
+            case Constants.PROMO_QUEEN,  Constants.PROMO_QUEEN_CAPTURE  -> white ? Constants.W_QUEEN  : Constants.B_QUEEN;
+            case Constants.PROMO_ROOK,   Constants.PROMO_ROOK_CAPTURE   -> white ? Constants.W_ROOK   : Constants.B_ROOK;
+            case Constants.PROMO_BISHOP, Constants.PROMO_BISHOP_CAPTURE -> white ? Constants.W_BISHOP : Constants.B_BISHOP;
+            default -> white ? Constants.W_KNIGHT : Constants.B_KNIGHT;
+        };
     }
-    public static long generateBishopRays(long occupancy, int square){
 
-        return BitHelper.hyperbolaQuintessence(occupancy,Constants.DIAG_MASKS[square], square)
-                | BitHelper.hyperbolaQuintessence(occupancy,Constants.ANTIDIAG_MASKS[square],square);
+    public static long generateBishopRays(long occupancy, int square){
+        return SliderAttacks.bishopAttacks(square, occupancy);
     }
 
 
     public static long generateRookRays(long occupancy, int square){
-        return BitHelper.hyperbolaQuintessence(occupancy,Constants.FILE_MASKS[square], square)
-                | BitHelper.hyperbolaQuintessence(occupancy,Constants.RANK_MASKS[square],square);
+        return SliderAttacks.rookAttacks(square, occupancy);
     }
 
     
@@ -297,8 +798,8 @@ public class MoveGenerator {
     private static int generatePawnCaptures(Board board, int[] moves, int moveCount) {
         int us = board.sideToMove;
 
-        long pawns = (us == Constants.WHITE) ? board.whitePawns : board.blackPawns;
-        long oppBB = (us == Constants.WHITE) ? board.blackPieces : board.whitePieces;
+        long pawns = board.pieces[Constants.W_PAWN + us];
+        long oppBB = board.occupancy[us ^ 1];
 
         long promoRank = (us == Constants.WHITE) ? Constants.RANK_8 : Constants.RANK_1;
 
@@ -375,8 +876,8 @@ public class MoveGenerator {
 
 
     private static int generateKnightCaptures(Board board, int[] moves, int moveCount) {
-        long knights = board.sideToMove == Constants.WHITE ? board.whiteKnights : board.blackKnights;
-        long oppBB   = board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces;
+        long knights = board.pieces[Constants.W_KNIGHT + board.sideToMove];
+        long oppBB   = board.occupancy[board.sideToMove ^ 1];
 
         while (knights != 0) {
             int from = BitHelper.lsb(knights);
@@ -397,22 +898,22 @@ public class MoveGenerator {
 
     private static int generateBishopCaptures(Board board, int[] moves, int moveCount) {
         return generateSlidingCaptures(board, moves, moveCount,
-                board.sideToMove == Constants.WHITE ? board.whiteBishops : board.blackBishops,
-                board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces,
+                board.pieces[Constants.W_BISHOP + board.sideToMove],
+                board.occupancy[board.sideToMove ^ 1],
                 true, false);
     }
 
     private static int generateRookCaptures(Board board, int[] moves, int moveCount) {
         return generateSlidingCaptures(board, moves, moveCount,
-                board.sideToMove == Constants.WHITE ? board.whiteRooks : board.blackRooks,
-                board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces,
+                board.pieces[Constants.W_ROOK + board.sideToMove],
+                board.occupancy[board.sideToMove ^ 1],
                 false, true);
     }
 
     private static int generateQueenCaptures(Board board, int[] moves, int moveCount) {
         return generateSlidingCaptures(board, moves, moveCount,
-                board.sideToMove == Constants.WHITE ? board.whiteQueens : board.blackQueens,
-                board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces,
+                board.pieces[Constants.W_QUEEN + board.sideToMove],
+                board.occupancy[board.sideToMove ^ 1],
                 true, true);
     }
 
@@ -440,8 +941,8 @@ public class MoveGenerator {
     }
 
     private static int generateKingCaptures(Board board, int[] moves, int mc) {
-        long king = board.sideToMove == Constants.WHITE ? board.whiteKing : board.blackKing;
-        long opp  = board.sideToMove == Constants.WHITE ? board.blackPieces : board.whitePieces;
+        long king = board.pieces[Constants.W_KING + board.sideToMove];
+        long opp  = board.occupancy[board.sideToMove ^ 1];
 
         int from = BitHelper.lsb(king);
         long targets = Constants.KING_MASKS[from] & opp;
@@ -0,0 +1,159 @@
+package engine.move;
+
+import engine.board.Board;
+import engine.common.BitHelper;
+import engine.common.Constants;
+import engine.common.SliderAttacks;
+
+/**
+ * Static exchange evaluation: the material outcome of the capture sequence on a move's target
+ * square, both sides always recapturing with their least valuable attacker. Sliders hidden
+ * behind a piece that has just captured join in as x-rays. Pins are ignored.
+ */
+public final class SEE {
+
+    private SEE() {}
+
+    /** Material balance of the exchange started by {@code move}, from the mover's point of view. */
+    public static int see(Board board, int move) {
+        final int flag = Move.flags(move);
+        if (flag == Constants.KING_CASTLE || flag == Constants.QUEEN_CASTLE) return 0;
+
+        final int from = Move.from(move);
+        final int to = Move.to(move);
+
+        int[] gain = new int[32];
+        gain[0] = capturedValue(board, move);
+        int onSquare = movedValue(board, move);
+        if (flag >= Constants.PROMO_KNIGHT) gain[0] += onSquare - Constants.PAWN_VALUE;
+
+        long occ = board.allPieces ^ (1L << from);
+        if (flag == Constants.EN_PASSANT) occ ^= 1L << epVictimSquare(board, to);
+
+        long attackers = AttackGenerator.attackersTo(board, to, occ) & occ;
+        int side = board.sideToMove ^ 1;
+
+        int d = 0;
+        while (true) {
+            long sideAttackers = attackers & board.occupancy[side];
+            if (sideAttackers == 0) break;
+
+            int sq = leastValuable(board, sideAttackers, side);
+            int piece = board.getPieceOn(sq);
+
+            // a king may only recapture when nothing defends the square any more
+            if (piece >= Constants.W_KING
+                && (attackers & ~sideAttackers & board.occupancy[side ^ 1]) != 0) break;
+
+            d++;
+            gain[d] = onSquare - gain[d - 1];
+
+            onSquare = Constants.PIECE_VALUE[piece];
+            occ ^= 1L << sq;
+            attackers = (attackers | xrays(board, to, occ, piece)) & occ;
+            side ^= 1;
+        }
+
+        while (d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+            d--;
+        }
+        return gain[0];
+    }
+
+    /** Whether {@code see(board, move) >= threshold}, deciding as early as the swap allows. */
+    public static boolean seeGe(Board board, int move, int threshold) {
+        final int flag = Move.flags(move);
+        if (flag == Constants.KING_CASTLE || flag == Constants.QUEEN_CASTLE) return 0 >= threshold;
+
+        final int from = Move.from(move);
+        final int to = Move.to(move);
+
+        int moved = movedValue(board, move);
+        int promoGain = flag >= Constants.PROMO_KNIGHT ? moved - Constants.PAWN_VALUE : 0;
+
+        // swap: what the side to move still has to win; stop as soon as its sign is settled
+        int swap = capturedValue(board, move) + promoGain - threshold;
+        if (swap < 0) return false;
+
+        swap = moved - swap;
+        if (swap <= 0) return true;
+
+        long occ = board.allPieces ^ (1L << from) ^ (1L << to);
+        if (flag == Constants.EN_PASSANT) occ ^= 1L << epVictimSquare(board, to);
+
+        long attackers = AttackGenerator.attackersTo(board, to, occ);
+        int side = board.sideToMove;
+        int res = 1;
+
+        while (true) {
+            side ^= 1;
+            attackers &= occ;
+
+            long own = board.occupancy[side];
+            long sideAttackers = attackers & own;
+            if (sideAttackers == 0) break;
+
+            res ^= 1;
+
+            int sq = leastValuable(board, sideAttackers, side);
+            int piece = board.getPieceOn(sq);
+
+            if (piece >= Constants.W_KING) {
+                // capturing with the king only stands if the other side has nothing left
+                return ((attackers & ~own) != 0 ? res ^ 1 : res) != 0;
+            }
+
+            swap = Constants.PIECE_VALUE[piece] - swap;
+            if (swap < res) break;
+
+            occ ^= 1L << sq;
+            attackers |= xrays(board, to, occ, piece);
+        }
+
+        return res != 0;
+    }
+
+    private static int capturedValue(Board board, int move) {
+        int flag = Move.flags(move);
+        if (flag == Constants.EN_PASSANT) return Constants.PAWN_VALUE;
+        if (!Move.isCapture(move)) return 0;
+        return Constants.PIECE_VALUE[board.getPieceOn(Move.to(move))];
+    }
+
+    /** Value of the piece standing on the target square once the move is made. */
+    private static int movedValue(Board board, int move) {
+        return Move.flags(move) >= Constants.PROMO_KNIGHT
+            ? Constants.PIECE_VALUE[Move.promo(move)]
+            : Constants.PIECE_VALUE[board.getPieceOn(Move.from(move))];
+    }
+
+    private static int epVictimSquare(Board board, int to) {
+        return board.sideToMove == Constants.WHITE ? to - 8 : to + 8;
+    }
+
+    private static int leastValuable(Board board, long attackers, int side) {
+        // pawn, knight, bishop, rook, queen; the king is whatever is left
+        for (int piece = Constants.W_PAWN + side; piece < Constants.W_KING; piece += 2) {
+            long bb = attackers & board.pieces[piece];
+            if (bb != 0) return BitHelper.lsb(bb);
+        }
+        return BitHelper.lsb(attackers);
+    }
+
+    /** Sliders uncovered on {@code sq} once a piece of type {@code piece} has left the line. */
+    private static long xrays(Board board, int sq, long occ, int piece) {
+        long bishopsQueens = board.diagonalSliders();
+        long rooksQueens   = board.orthogonalSliders();
+
+        return switch (piece) {
+            case Constants.W_PAWN, Constants.B_PAWN, Constants.W_BISHOP, Constants.B_BISHOP ->
+                SliderAttacks.bishopAttacks(sq, occ) & bishopsQueens;
+            case Constants.W_ROOK, Constants.B_ROOK ->
+                SliderAttacks.rookAttacks(sq, occ) & rooksQueens;
+            case Constants.W_QUEEN, Constants.B_QUEEN ->
+                (SliderAttacks.bishopAttacks(sq, occ) & bishopsQueens) | (SliderAttacks.rookAttacks(sq, occ) & rooksQueens);
+            default -> 0L;
+        };
+    }
+}
@@ -1,48 +1,150 @@
 package engine.perft;
 
-import engine.common.BitHelper;
-import engine.common.Constants;
-import engine.move.AttackGenerator;
 import engine.board.Board;
 import engine.move.Move;
 import engine.move.MoveGenerator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Move generator node counter.
+ *
+ * Legal generation lets the last ply be bulk-counted (the move count is the node count), and
+ * every walker preallocates one move buffer per ply. {@link #divide} splits the root moves over
+ * the common fork-join pool, each on its own board copy. Every entry point optionally takes a
+ * {@link PerftCache} shared by all workers; pass null to count without hashing.
+ */
 public class Perft {
 
+    private static final int MAX_MOVES = 256;
+
+    /** Per-root-move node counts, in generation order. */
+    public static final class Divide {
+        public final int[] moves;
+        public final long[] nodes;
+        public final long total;
+
+        Divide(int[] moves, long[] nodes) {
+            this.moves = moves;
+            this.nodes = nodes;
+            long sum = 0;
+            for (long n : nodes) sum += n;
+            this.total = sum;
+        }
+
+        @Override public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < moves.length; i++) {
+                sb.append(Move.toUCI(moves[i])).append(": ").append(nodes[i]).append('\n');
+            }
+            sb.append("total: ").append(total);
+            return sb.toString();
+        }
+    }
+
+    /** Single-threaded count. */
     public static long perft(Board board, int depth) {
-        if (depth == 0)
-            return 1;
+        return perft(board, depth, null);
+    }
 
-        long nodes = 0;
+    public static long perft(Board board, int depth, PerftCache cache) {
+        return new Walker(depth, cache).count(board, depth, 0);
+    }
 
-        int[] moves = new int[256];
-        int moveCount = MoveGenerator.generateAllMoves(board,moves);
+    /** Parallel count, split at the root. */
+    public static long perftParallel(Board board, int depth) {
+        return perftParallel(board, depth, null);
+    }
 
-        for (int i = 0; i < moveCount; i++) {
-            int move = moves[i];
+    public static long perftParallel(Board board, int depth, PerftCache cache) {
+        return depth <= 1 ? perft(board, depth, cache) : divide(board, depth, cache).total;
+    }
 
-            board.makeMove(move);
+    /** Parallel count that also reports the subtree size below every root move. */
+    public static Divide divide(Board board, int depth) {
+        return divide(board, depth, null);
+    }
 
-            int us = board.sideToMove ^ 1;
-            int kingSq = (us == Constants.WHITE)
-                    ? BitHelper.lsb(board.whiteKing)
-                    : BitHelper.lsb(board.blackKing);
-            long curNodes = 0;
-            if (!AttackGenerator.isSquareAttacked(board, kingSq, board.sideToMove)) {
-                curNodes = perft(board, depth - 1);
-            }
+    public static Divide divide(Board board, int depth, PerftCache cache) {
+        if (depth < 1) throw new IllegalArgumentException("divide needs depth >= 1, got " + depth);
 
-            nodes += curNodes;
+        int[] rootMoves = new int[MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(board, rootMoves);
 
-            if(depth == 5){
-                System.out.println(Move.toUCI(move) + ": " + curNodes);
-            }
+        List<RootTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new RootTask(board.copy(), rootMoves[i], depth - 1, cache));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int[] moves = new int[count];
+        long[] nodes = new long[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = rootMoves[i];
+            nodes[i] = tasks.get(i).join();
+        }
+        return new Divide(moves, nodes);
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Board board;
+        private final int move;
+        private final int depth;
+        private final transient PerftCache cache;
+
+        RootTask(Board board, int move, int depth, PerftCache cache) {
+            this.board = board;
+            this.move = move;
+            this.depth = depth;
+            this.cache = cache;
+        }
 
+        @Override protected Long compute() {
+            board.makeMove(move);
+            long nodes = new Walker(depth, cache).count(board, depth, 0);
             board.unmakeMove();
+            return nodes;
         }
+    }
 
+    private static final class Walker {
+        private final int[][] buffers;
+        private final PerftCache cache;
+
+        Walker(int depth, PerftCache cache) {
+            this.buffers = new int[Math.max(depth, 1)][MAX_MOVES];
+            this.cache = cache;
+        }
 
-        return nodes;
+        long count(Board board, int depth, int ply) {
+            if (depth == 0) return 1;
+
+            // depth 1 is a bulk count already, cheaper than a probe
+            boolean hashed = cache != null && depth >= 2;
+            if (hashed) {
+                long cached = cache.probe(board.zobristKey, depth);
+                if (cached >= 0) return cached;
+            }
+
+            int[] moves = buffers[ply];
+            int moveCount = MoveGenerator.generateLegalMoves(board, moves);
+
+            if (depth == 1) return moveCount;
+
+            long nodes = 0;
+            for (int i = 0; i < moveCount; i++) {
+                board.makeMove(moves[i]);
+                nodes += count(board, depth - 1, ply + 1);
+                board.unmakeMove();
+            }
+
+            if (hashed) cache.store(board.zobristKey, depth, nodes);
+            return nodes;
+        }
     }
 }
-
@@ -0,0 +1,89 @@
+package engine.perft;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared subtree-count cache for perft, keyed on zobrist key and remaining depth.
+ *
+ * Lock-free via the xor trick: each slot stores (key ^ data) next to data, so a slot torn by a
+ * concurrent writer simply fails verification and reads as a miss. Buckets hold two slots: the
+ * first keeps the deepest subtree seen, the second always takes the newest entry.
+ */
+public final class PerftCache {
+
+    private static final int SLOTS = 2;
+    private static final long DEPTH_MIX = 0x9E3779B97F4A7C15L;
+
+    private final long[] checks;
+    private final long[] data;
+    private final int bucketMask;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public PerftCache(int sizeMB) {
+        long bytes = (long) sizeMB * 1024 * 1024;
+        long buckets = Long.highestOneBit(Math.max(1, bytes / (SLOTS * 16)));
+        if (buckets > (1 << 28)) buckets = 1 << 28;
+
+        bucketMask = (int) buckets - 1;
+        checks = new long[(int) buckets * SLOTS];
+        data = new long[(int) buckets * SLOTS];
+    }
+
+    /** Cached node count, or -1 on a miss. */
+    public long probe(long zobristKey, int depth) {
+        probes.increment();
+
+        long key = mix(zobristKey, depth);
+        int i = ((int) key & bucketMask) * SLOTS;
+
+        for (int s = i; s < i + SLOTS; s++) {
+            long d = data[s];
+            if ((checks[s] ^ d) == key && depth(d) == depth) {
+                hits.increment();
+                return nodes(d);
+            }
+        }
+        return -1;
+    }
+
+    public void store(long zobristKey, int depth, long nodes) {
+        long key = mix(zobristKey, depth);
+        int i = ((int) key & bucketMask) * SLOTS;
+        long d = (nodes << 8) | depth;
+
+        int slot = depth >= depth(data[i]) ? i : i + 1;
+        data[slot] = d;
+        checks[slot] = key ^ d;
+    }
+
+    public void clear() {
+        Arrays.fill(checks, 0L);
+        Arrays.fill(data, 0L);
+        probes.reset();
+        hits.reset();
+    }
+
+    public long probes() { return probes.sum(); }
+
+    public long hits() { return hits.sum(); }
+
+    public double hitRate() {
+        long p = probes.sum();
+        return p == 0 ? 0.0 : (double) hits.sum() / p;
+    }
+
+    private static long mix(long zobristKey, int depth) {
+        return zobristKey ^ (depth * DEPTH_MIX);
+    }
+
+    private static int depth(long d) {
+        return (int) (d & 0xFF);
+    }
+
+    private static long nodes(long d) {
+        return d >>> 8;
+    }
+}
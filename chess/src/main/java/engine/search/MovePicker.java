@@ -0,0 +1,273 @@
+package engine.search;
+
+import engine.board.Board;
+import engine.common.Constants;
+import engine.move.Move;
+import engine.move.MoveGenerator;
+import engine.move.SEE;
+
+/**
+ * Staged, lazy move ordering. Moves are handed out one at a time by {@link #next()} and each
+ * stage only generates what it needs, so a cutoff on the TT move costs no generation at all.
+ *
+ * Main search: TT move -> good captures (MVV-LVA) -> killers -> quiets (history) -> losing captures (SEE < 0)
+ * Quiescence:  captures (MVV-LVA) -> quiet checks (optional)
+ * Evasions:    captures (MVV-LVA) ahead of quiet replies (history), all from generateEvasions
+ *
+ * One picker per ply; it owns that ply's move and score buffers.
+ */
+public final class MovePicker {
+
+    private static final int STAGE_TT = 0;
+    private static final int STAGE_GEN_CAPTURES = 1;
+    private static final int STAGE_GOOD_CAPTURES = 2;
+    private static final int STAGE_KILLER_1 = 3;
+    private static final int STAGE_KILLER_2 = 4;
+    private static final int STAGE_GEN_QUIETS = 5;
+    private static final int STAGE_QUIETS = 6;
+    private static final int STAGE_BAD_CAPTURES = 7;
+    private static final int STAGE_DONE = 8;
+
+    private static final int STAGE_Q_GEN_CAPTURES = 9;
+    private static final int STAGE_Q_CAPTURES = 10;
+
+    private static final int STAGE_GEN_EVASIONS = 11;
+    private static final int STAGE_EVASIONS = 12;
+
+    private static final int STAGE_Q_GEN_CHECKS = 13;
+    private static final int STAGE_Q_CHECKS = 14;
+
+    private static final int EVASION_CAPTURE_BONUS = 1 << 30;
+
+    private final int[] captures = new int[SearchContext.MAX_MOVES];
+    private final int[] captureScores = new int[SearchContext.MAX_MOVES];
+    private final int[] quiets = new int[SearchContext.MAX_MOVES];
+    private final int[] quietScores = new int[SearchContext.MAX_MOVES];
+
+    private final int[][][] history;
+
+    private Board board;
+    private int stage;
+
+    private int ttMove;
+    private int killer1;
+    private int killer2;
+
+    private int captureCount;
+    private int captureIndex;
+    private int badCaptureCount;
+    private int badCaptureIndex;
+
+    private int quietCount;
+    private int quietIndex;
+
+    private boolean withChecks;
+
+    public MovePicker(int[][][] history) {
+        this.history = history;
+    }
+
+    public void init(Board board, int ttMove, int killer1, int killer2) {
+        this.board = board;
+        this.ttMove = ttMove;
+        this.killer1 = killer1;
+        this.killer2 = killer2;
+        this.captureCount = this.captureIndex = 0;
+        this.badCaptureCount = this.badCaptureIndex = 0;
+        this.quietCount = this.quietIndex = 0;
+        this.withChecks = false;
+        this.stage = STAGE_TT;
+    }
+
+    public void initQuiescence(Board board) {
+        initQuiescence(board, false);
+    }
+
+    /** Captures, followed by quiet checking moves when {@code withChecks} is set. */
+    public void initQuiescence(Board board, boolean withChecks) {
+        init(board, 0, 0, 0);
+        this.withChecks = withChecks;
+        this.stage = STAGE_Q_GEN_CAPTURES;
+    }
+
+    /** Check evasions only; the side to move must be in check. */
+    public void initEvasions(Board board) {
+        init(board, 0, 0, 0);
+        this.stage = STAGE_GEN_EVASIONS;
+    }
+
+    /** Next move to search, or 0 once every stage is exhausted. */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case STAGE_TT -> {
+                    stage = STAGE_GEN_CAPTURES;
+                    if (ttMove != 0 && MoveGenerator.isLegal(board, ttMove)) return ttMove;
+                }
+
+                case STAGE_GEN_CAPTURES -> {
+                    generateCaptures();
+                    stage = STAGE_GOOD_CAPTURES;
+                }
+
+                case STAGE_GOOD_CAPTURES -> {
+                    while (captureIndex < captureCount) {
+                        int move = pickBest(captures, captureScores, captureIndex++, captureCount);
+                        if (move == ttMove) continue;
+                        if (!SEE.seeGe(board, move, 0)) {
+                            // captureIndex only grows, so the front of the buffer is free for deferred captures
+                            captures[badCaptureCount++] = move;
+                            continue;
+                        }
+                        return move;
+                    }
+                    stage = STAGE_KILLER_1;
+                }
+
+                case STAGE_KILLER_1 -> {
+                    stage = STAGE_KILLER_2;
+                    if (isUsableKiller(killer1)) return killer1;
+                }
+
+                case STAGE_KILLER_2 -> {
+                    stage = STAGE_GEN_QUIETS;
+                    if (killer2 != killer1 && isUsableKiller(killer2)) return killer2;
+                }
+
+                case STAGE_GEN_QUIETS -> {
+                    generateQuiets();
+                    stage = STAGE_QUIETS;
+                }
+
+                case STAGE_QUIETS -> {
+                    while (quietIndex < quietCount) {
+                        int move = pickBest(quiets, quietScores, quietIndex++, quietCount);
+                        if (move == ttMove || move == killer1 || move == killer2) continue;
+                        return move;
+                    }
+                    stage = STAGE_BAD_CAPTURES;
+                }
+
+                case STAGE_BAD_CAPTURES -> {
+                    if (badCaptureIndex < badCaptureCount) return captures[badCaptureIndex++];
+                    stage = STAGE_DONE;
+                }
+
+                case STAGE_Q_GEN_CAPTURES -> {
+                    generateCaptures();
+                    stage = STAGE_Q_CAPTURES;
+                }
+
+                case STAGE_Q_CAPTURES -> {
+                    if (captureIndex < captureCount) {
+                        return pickBest(captures, captureScores, captureIndex++, captureCount);
+                    }
+                    stage = withChecks ? STAGE_Q_GEN_CHECKS : STAGE_DONE;
+                }
+
+                case STAGE_Q_GEN_CHECKS -> {
+                    quietCount = MoveGenerator.generateQuietChecks(board, quiets);
+                    stage = STAGE_Q_CHECKS;
+                }
+
+                case STAGE_Q_CHECKS -> {
+                    if (quietIndex < quietCount) return quiets[quietIndex++];
+                    stage = STAGE_DONE;
+                }
+
+                case STAGE_GEN_EVASIONS -> {
+                    generateEvasions();
+                    stage = STAGE_EVASIONS;
+                }
+
+                case STAGE_EVASIONS -> {
+                    if (captureIndex < captureCount) {
+                        return pickBest(captures, captureScores, captureIndex++, captureCount);
+                    }
+                    stage = STAGE_DONE;
+                }
+
+                default -> {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private void generateCaptures() {
+        captureCount = MoveGenerator.generateLegalCaptures(board, captures);
+        for (int i = 0; i < captureCount; i++) {
+            captureScores[i] = mvvLva(captures[i]);
+        }
+    }
+
+    private void generateQuiets() {
+        quietCount = MoveGenerator.generateLegalQuiets(board, quiets);
+        int[][] sideHistory = history[board.sideToMove];
+        for (int i = 0; i < quietCount; i++) {
+            int move = quiets[i];
+            quietScores[i] = sideHistory[Move.from(move)][Move.to(move)];
+        }
+    }
+
+    private void generateEvasions() {
+        captureCount = MoveGenerator.generateEvasions(board, captures);
+        int[][] sideHistory = history[board.sideToMove];
+        for (int i = 0; i < captureCount; i++) {
+            int move = captures[i];
+            captureScores[i] = Move.isCapture(move)
+                ? EVASION_CAPTURE_BONUS + mvvLva(move)
+                : sideHistory[Move.from(move)][Move.to(move)];
+        }
+    }
+
+    private boolean isUsableKiller(int killer) {
+        return killer != 0
+            && killer != ttMove
+            && !Move.isCapture(killer)
+            && MoveGenerator.isLegal(board, killer);
+    }
+
+    /** Swaps the best-scored move in [from, to) into slot {@code from} and returns it. */
+    private static int pickBest(int[] moves, int[] scores, int from, int to) {
+        int bestIdx = from;
+        int bestScore = scores[from];
+        for (int j = from + 1; j < to; j++) {
+            if (scores[j] > bestScore) {
+                bestScore = scores[j];
+                bestIdx = j;
+            }
+        }
+
+        int move = moves[bestIdx];
+        moves[bestIdx] = moves[from];
+        moves[from] = move;
+
+        scores[bestIdx] = scores[from];
+        scores[from] = bestScore;
+
+        return move;
+    }
+
+    private int mvvLva(int move) {
+        return pieceValue(victimOf(move)) * 10 - pieceValue(board.getPieceOn(Move.from(move)));
+    }
+
+    private int victimOf(int move) {
+        if (Move.flags(move) == Constants.EN_PASSANT) {
+            return board.sideToMove == Constants.WHITE ? Constants.B_PAWN : Constants.W_PAWN;
+        }
+        return board.getPieceOn(Move.to(move));
+    }
+
+    static int pieceValue(int piece) {
+        return switch (piece) {
+            case Constants.W_PAWN, Constants.B_PAWN   -> 1;
+            case Constants.W_KNIGHT, Constants.B_KNIGHT -> 3;
+            case Constants.W_BISHOP, Constants.B_BISHOP -> 3;
+            case Constants.W_ROOK, Constants.B_ROOK   -> 5;
+            case Constants.W_QUEEN, Constants.B_QUEEN  -> 9;
+            default -> 0;
+        };
+    }
+}
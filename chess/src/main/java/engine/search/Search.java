@@ -2,16 +2,15 @@ package engine.search;
 
 import engine.board.Board;
 import engine.eval.ClassicalEvaluator;
-import engine.move.AttackGenerator;
+import engine.eval.EvalCache;
+import engine.eval.Evaluator;
+import engine.eval.PawnHashTable;
 import engine.move.Move;
-import engine.move.MoveGenerator;
-import engine.common.Constants;
+import engine.move.SEE;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
-import static engine.eval.ClassicalEvaluator.evaluate;
-
 public final class Search {
 
     public static final int INF = 100_000;
@@ -19,6 +18,12 @@ public final class Search {
 
     private static final int Q_MAX_PLY = 16;
 
+    /**
+     * Also try quiet checks on the first quiescence ply (-Dchess.qsearchChecks=true). The checked
+     * side answers with evasions, after which quiescence goes back to captures only.
+     */
+    public static final boolean QSEARCH_CHECKS_DEFAULT = Boolean.getBoolean("chess.qsearchChecks");
+
 
     private static final int HISTORY_MAX = 200_000;
 
@@ -29,6 +34,14 @@ public final class Search {
 
     private final TranspositionTable tt;
 
+    // This thread's evaluator; helpers get theirs from the same factory
+    private final Evaluator.Factory evaluatorFactory;
+    private final Evaluator evaluator;
+    // The evaluator again when it is the classical one, called through its final class so the
+    // evaluation call sites stay monomorphic; null otherwise
+    private final ClassicalEvaluator.Instance classical;
+    private final boolean moveHooks;
+
     public long nodes;
 
     private int rootBestMove;
@@ -40,8 +53,75 @@ public final class Search {
 
     public int lastCompletedRootScore;
 
+    public boolean qsearchChecks = QSEARCH_CHECKS_DEFAULT;
+
+    /**
+     * Copy-make instead of make/unmake (-Dchess.copyMake=true): every child position is built
+     * into a per-ply scratch board and simply dropped afterwards. Kept for benchmarking.
+     */
+    public static final boolean COPY_MAKE_DEFAULT = Boolean.getBoolean("chess.copyMake");
+
+    public boolean copyMake = COPY_MAKE_DEFAULT;
+
+    // SMP helpers, their boards and threads are created once and reused for every move; helper 0
+    // is this search itself, so its evaluator is not left idle
+    private Search[] helpers;
+    private Board[] helperBoards;
+    private ExecutorService pool;
+
+    /** A classical search with its own eval cache of {@link EvalCache#DEFAULT_SIZE_MB}, as each of its helpers gets. */
     public Search(TranspositionTable tt) {
+        this(tt, ClassicalEvaluator.factory());
+    }
+
+    /** A classical search whose helpers all share {@code evalCache} (null: no eval cache). */
+    public Search(TranspositionTable tt, EvalCache evalCache) {
+        this(tt, ClassicalEvaluator.factory(evalCache));
+    }
+
+    /** A search evaluating with an evaluator from {@code evaluators}, as each of its helpers does. */
+    public Search(TranspositionTable tt, Evaluator.Factory evaluators) {
         this.tt = tt;
+        this.evaluatorFactory = evaluators;
+        this.evaluator = evaluators.create();
+        this.classical = evaluator instanceof ClassicalEvaluator.Instance c ? c : null;
+        this.moveHooks = evaluator.needsMoveHooks();
+    }
+
+    public Evaluator evaluator() {
+        return evaluator;
+    }
+
+    /** The classical evaluator's eval cache; null without one or for other evaluators. */
+    public EvalCache evalCache() {
+        return classical != null ? classical.evalCache() : null;
+    }
+
+    /** The classical evaluator's own pawn hash table (helper threads have theirs); null for other evaluators. */
+    public PawnHashTable pawnTable() {
+        return classical != null ? classical.pawnTable() : null;
+    }
+
+    /** Pawn hash probes over the tables of every thread of this search; 0 for other evaluators. */
+    public long pawnProbes() {
+        long n = 0;
+        for (Search s : threadSearches()) {
+            if (s.classical != null) n += s.classical.pawnTable().probes();
+        }
+        return n;
+    }
+
+    /** Pawn hash hits over the tables of every thread of this search; 0 for other evaluators. */
+    public long pawnHits() {
+        long n = 0;
+        for (Search s : threadSearches()) {
+            if (s.classical != null) n += s.classical.pawnTable().hits();
+        }
+        return n;
+    }
+
+    private Search[] threadSearches() {
+        return helpers != null ? helpers : new Search[] {this};
     }
 
     public int search(Board board, long timeForMoveMs) {
@@ -67,18 +147,20 @@ public final class Search {
 
         tt.increaseGeneration();
 
-        ExecutorService pool =
-            java.util.concurrent.Executors.newFixedThreadPool(THREADS);
+        ensureHelpers(THREADS);
 
         java.util.List<java.util.concurrent.Future<Integer>> futures =
             new java.util.ArrayList<>();
 
         for (int t = 0; t < THREADS; t++) {
-            Board copy = board.copy();
-            Search worker = new Search(tt);
+            Board copy = helperBoards[t];
+            copy.forkFrom(board);
+            Search worker = helpers[t];
             worker.startTimeMs = this.startTimeMs;
             worker.timeLimitMs = this.timeLimitMs;
             worker.stop        = false;
+            worker.qsearchChecks = this.qsearchChecks;
+            worker.copyMake    = this.copyMake;
             futures.add(pool.submit(() -> worker.searchSingle(copy, maxDepth)));
         }
 
@@ -96,10 +178,60 @@ public final class Search {
         long endNodes = GLOBAL_NODES.get();
         this.nodes = endNodes - startNodes;
 
-        pool.shutdown();
         return bestMove;
     }
 
+    private void ensureHelpers(int threads) {
+        if (helpers != null && helpers.length == threads) return;
+
+        helpers = new Search[threads];
+        helperBoards = new Board[threads];
+        for (int t = 0; t < threads; t++) {
+            helpers[t] = t == 0 ? this : new Search(tt, evaluatorFactory);
+            helperBoards[t] = new Board();
+        }
+
+        if (pool != null) pool.shutdown();
+        pool = java.util.concurrent.Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Plays {@code move} and returns the board holding the child position. */
+    private Board make(Board board, int move, int ply) {
+        Board child = board;
+        if (copyMake) {
+            child = context.plyBoard(ply + 1);
+            child.copyPositionFrom(board);
+        }
+        child.makeMove(move);
+        if (moveHooks) evaluator.onMake(child, move);
+        return child;
+    }
+
+    private Board makeNull(Board board, int ply) {
+        Board child = board;
+        if (copyMake) {
+            child = context.plyBoard(ply + 1);
+            child.copyPositionFrom(board);
+        }
+        child.makeNullMove();
+        if (moveHooks) evaluator.onMake(child, 0);
+        return child;
+    }
+
+    private void unmake(Board board) {
+        if (!copyMake) board.unmakeMove();
+        if (moveHooks) evaluator.onUnmake(board);
+    }
+
+    private void unmakeNull(Board board) {
+        if (!copyMake) board.unmakeNullMove();
+        if (moveHooks) evaluator.onUnmake(board);
+    }
+
 
 
     public int searchSingle(Board board, int maxDepth) {
@@ -107,6 +239,8 @@ public final class Search {
         rootBestMove = 0;
         previousBestMove = 0;
 
+        evaluator.attach(board);
+
         int previousScore = 0;
 
 
@@ -173,7 +307,7 @@ public final class Search {
 
 
         if (depth == 0) {
-            return quiescence(board, alpha, beta, ply);
+            return quiescence(board, alpha, beta, ply, 0);
         }
 
         int initAlpha = alpha;
@@ -207,16 +341,16 @@ public final class Search {
             && !board.isInCheck()
             && board.nonPawnMaterial(board.sideToMove) >= 8){
 
-            board.makeNullMove();
+            Board child = makeNull(board, ply);
 
             int score = -alphaBeta(
-                board,
+                child,
                 depth - 1 - 2,
                 -beta,
                 -beta + 1,
                 ply + 1, false);
 
-            board.unmakeNullMove();
+            unmakeNull(board);
 
             if (score >= beta) {
                 return score;
@@ -238,18 +372,15 @@ public final class Search {
 
 
 
-        int[] moves = context.moves[ply];
-        int[] scores = context.scores[ply];
-        int count = MoveGenerator.generateAllMoves(board,moves);
-
-        if (ttMove == 0 && ply == 0) {
+        // At the root the last completed iteration's move goes first: a root TT entry can come
+        // from a transposition deeper in the tree and would otherwise be searched first when
+        // the clock runs out mid-iteration.
+        if (ply == 0 && previousBestMove != 0) {
             ttMove = previousBestMove;
         }
 
-
-        for (int i = 0; i < count; i++) {
-            scores[i] = scoreMove(board, moves[i], ttMove, ply);
-        }
+        MovePicker picker = context.pickers[ply];
+        picker.init(board, ttMove, context.killerMoves[ply][0], context.killerMoves[ply][1]);
 
         int bestMove = 0;
         int bestEval = -INF;
@@ -257,37 +388,14 @@ public final class Search {
 
         boolean searchedOneLegal = false;
 
-        for (int i = 0; i < count; i++) {
-            int bestIdx = i;
-            int bestScore = scores[i];
-            for (int j = i + 1; j < count; j++) {
-                if (scores[j] > bestScore) {
-                    bestScore = scores[j];
-                    bestIdx = j;
-                }
-            }
-
-            int move = moves[bestIdx];
-            moves[bestIdx] = moves[i];
-            moves[i] = move;
-
-            int tmp = scores[bestIdx];
-            scores[bestIdx] = scores[i];
-            scores[i] = tmp;
-
+        int move;
+        for (int i = 0; (move = picker.next()) != 0; i++) {
             int moverSide = board.sideToMove;
 
-            board.makeMove(move);
-
-            int us = board.sideToMove ^ 1;
-            int kingSq = (us == Constants.WHITE) ? board.whiteKingSq : board.blackKingSq;
-            if (AttackGenerator.isSquareAttacked(board, kingSq, board.sideToMove)) {
-                board.unmakeMove();
-                continue;
-            }
+            Board child = make(board, move, ply);
 
             hasLegalMove = true;
-            inCheck = board.isInCheck();
+            inCheck = child.isInCheck();
 
             boolean quiet = !Move.isCapture(move);
 
@@ -295,9 +403,9 @@ public final class Search {
                 quiet &&
                 depth <= 3 &&
                 i > 8 &&
-                !board.isRepetition())
+                !child.isRepetition())
             {
-                board.unmakeMove();
+                unmake(board);
                 continue;
             }
 
@@ -305,7 +413,7 @@ public final class Search {
 
             if (!searchedOneLegal) {
                 searchedOneLegal = true;
-                score = -alphaBeta(board, depth - 1, -beta, -alpha, ply + 1, true);
+                score = -alphaBeta(child, depth - 1, -beta, -alpha, ply + 1, true);
             } else {
                 quiet = !Move.isCapture(move);
                 int reduction = 0;
@@ -316,14 +424,14 @@ public final class Search {
                 }
 
                 int newDepth = (depth - 1) - reduction;
-                score = -alphaBeta(board, newDepth, -alpha - 1, -alpha, ply + 1, true);
+                score = -alphaBeta(child, newDepth, -alpha - 1, -alpha, ply + 1, true);
 
                 if (score > alpha) {
-                    score = -alphaBeta(board, depth - 1, -beta, -alpha, ply + 1, true);
+                    score = -alphaBeta(child, depth - 1, -beta, -alpha, ply + 1, true);
                 }
             }
 
-            board.unmakeMove();
+            unmake(board);
 
             if (score > bestEval) {
                 bestEval = score;
@@ -383,13 +491,22 @@ public final class Search {
         return bestEval;
     }
 
-    private int quiescence(Board board, int alpha, int beta, int ply)
+    private int evaluate(Board board) {
+        return classical != null ? classical.evaluate(board) : evaluator.evaluate(board);
+    }
+
+    /** Exact inside (alpha, beta), otherwise possibly just a bound on the far side of the window. */
+    private int evaluate(Board board, int alpha, int beta) {
+        return classical != null ? classical.evaluate(board, alpha, beta) : evaluator.evaluate(board, alpha, beta);
+    }
+
+    private int quiescence(Board board, int alpha, int beta, int ply, int qply)
     {
         GLOBAL_NODES.incrementAndGet();
         if (board.halfmoveClock >= 100) return 0;
 
         if (ply >= Q_MAX_PLY) {
-            return ClassicalEvaluator.evaluate(board);
+            return evaluate(board, alpha, beta);
         }
 
         if (stop) return alpha;
@@ -398,97 +515,48 @@ public final class Search {
             return alpha;
         }
 
-        int standPat = evaluate(board);
-
-        if (standPat >= beta) {
-            return standPat;
-        }
-        if (standPat > alpha) {
-            alpha = standPat;
-        }
-
-        int[] moves = context.moves[ply];
-        int[] scores = context.scores[ply];
-        int count = MoveGenerator.generateCaptures(board, moves);
+        // In check there is no stand-pat: every evasion is searched, and having none is mate
+        boolean inCheck = board.isInCheck();
 
-        for (int i = 0; i < count; i++) {
-            scores[i] = scoreMove(board, moves[i], 0, ply);
-        }
+        if (!inCheck) {
+            int standPat = evaluate(board, alpha, beta);
 
-        for (int i = 0; i < count; i++)
-        {
-            int bestIdx = i;
-            int bestScore = scores[i];
-
-            for (int j = i + 1; j < count; j++) {
-                if (scores[j] > bestScore) {
-                    bestScore = scores[j];
-                    bestIdx = j;
-                }
+            if (standPat >= beta) {
+                return standPat;
+            }
+            if (standPat > alpha) {
+                alpha = standPat;
             }
+        }
 
-            int move = moves[bestIdx];
-            moves[bestIdx] = moves[i];
-            moves[i] = move;
+        MovePicker picker = context.pickers[ply];
+        if (inCheck) picker.initEvasions(board);
+        else picker.initQuiescence(board, qsearchChecks && qply == 0);
 
-            int tmp = scores[bestIdx];
-            scores[bestIdx] = scores[i];
-            scores[i] = tmp;
+        boolean hasLegalMove = false;
 
-            board.makeMove(move);
+        int move;
+        while ((move = picker.next()) != 0)
+        {
+            hasLegalMove = true;
 
-            int us = board.sideToMove ^ 1;
-            int kingSq = (us == Constants.WHITE)
-                ? board.whiteKingSq
-                : board.blackKingSq;
+            // Out of check, a capture or check that loses material on the exchange is not worth a node
+            if (!inCheck && !SEE.seeGe(board, move, 0)) continue;
 
-            if (AttackGenerator.isSquareAttacked(board, kingSq, board.sideToMove)) {
-                board.unmakeMove();
-                continue;
-            }
+            Board child = make(board, move, ply);
 
-            int score = -quiescence(board, -beta, -alpha, ply + 1);
-            board.unmakeMove();
+            int score = -quiescence(child, -beta, -alpha, ply + 1, qply + 1);
+            unmake(board);
 
             if (score >= beta) return score;
             if (score > alpha) alpha = score;
         }
 
-        return alpha;
-    }
-
-    private int scoreMove(Board board, int move, int ttMove, int ply) {
-        if (move == ttMove) return 1_000_000;
-
-        if (Move.isCapture(move)) {
-            int to = Move.to(move);
-            int victim = board.getPieceOn(to);
-
-            if (victim == -1 && Move.flags(move) == Constants.EN_PASSANT) {
-                victim = (board.sideToMove == Constants.WHITE)
-                    ? Constants.B_PAWN
-                    : Constants.W_PAWN;
-            }
-
-            int attacker = board.getPieceOn(Move.from(move));
-            return 100_000 + pieceValue(victim) * 10 - pieceValue(attacker);
+        if (inCheck && !hasLegalMove) {
+            return -(MATE - ply);
         }
 
-        if (move == context.killerMoves[ply][0]) return 90_000;
-        if (move == context.killerMoves[ply][1]) return 80_000;
-
-        return context.history[board.sideToMove][Move.from(move)][Move.to(move)];
-    }
-
-    private int pieceValue(int piece) {
-        return switch (piece) {
-            case Constants.W_PAWN, Constants.B_PAWN   -> 1;
-            case Constants.W_KNIGHT, Constants.B_KNIGHT -> 3;
-            case Constants.W_BISHOP, Constants.B_BISHOP -> 3;
-            case Constants.W_ROOK, Constants.B_ROOK   -> 5;
-            case Constants.W_QUEEN, Constants.B_QUEEN  -> 9;
-            default -> 0;
-        };
+        return alpha;
     }
 
     private void updateHistory(int moverSide, int move, int depth) {
@@ -1,18 +1,29 @@
 package engine.search;
 
+import engine.board.Board;
 
 public final class SearchContext {
   public static final int MAX_PLY = 128;
   public static final int MAX_MOVES = 256;
 
-  public final int[][] moves = new int[MAX_PLY][MAX_MOVES];
-  public final int[] moveCounts = new int[MAX_PLY];
-
-  public final int[][] scores = new int[MAX_PLY][MAX_MOVES];
-
   public final int[][] killerMoves = new int[128][2];
 
   public final int[][][] history = new int[2][64][64];
 
+  public final MovePicker[] pickers = new MovePicker[MAX_PLY];
+
+  // Scratch boards for copy-make, one per ply, created on first use
+  private final Board[] plyBoards = new Board[MAX_PLY + 1];
+
+  public SearchContext() {
+    for (int i = 0; i < MAX_PLY; i++) pickers[i] = new MovePicker(history);
+  }
+
+  public Board plyBoard(int ply) {
+    Board b = plyBoards[ply];
+    if (b == null) b = plyBoards[ply] = new Board();
+    return b;
+  }
+
 }
 
@@ -61,7 +61,7 @@ public final class TimeManager {
 
     // quick legal move count (we can generate once here)
     int[] tmpMoves = new int[256];
-    int legalCount = MoveGenerator.generateAllMoves(board, tmpMoves);
+    int legalCount = MoveGenerator.generateLegalMoves(board, tmpMoves);
 
     if (legalCount > 35) complexity *= 1.20;
     else if (legalCount < 8) complexity *= 0.75;
@@ -151,6 +151,7 @@ public class TranspositionTable {
     public ProbeResult probe(long hash, int depth, int alpha, int beta, int ply) {
         ProbeResult result = localResult.get();
         result.status = MISS;
+        result.bestMove = NO_MOVE;
 
         int bucketIndex = (int) hash & (numBuckets - 1);
         int entryIndex = bucketIndex * BUCKET_SIZE;
@@ -180,6 +181,7 @@ public class TranspositionTable {
                 if (flags[i] == LOWER && scores[i] >= beta) {
                     result.status = BETA_CUTOFF;
                     result.score = scores[i];
+                    result.bestMove = bestMoves[i];
 
                     if(result.score >= MATE_THRESHOLD){
                         result.score -= ply;
@@ -192,6 +194,7 @@ public class TranspositionTable {
                 if (flags[i] == UPPER && scores[i] <= alpha) {
                     result.status = ALPHA_CUTOFF;
                     result.score = scores[i];
+                    result.bestMove = bestMoves[i];
 
                     if(result.score >= MATE_THRESHOLD){
                         result.score -= ply;
@@ -230,6 +233,7 @@ public class TranspositionTable {
                 if (flags[j] == LOWER && scores[j] >= beta) {
                     result.status = BETA_CUTOFF;
                     result.score = scores[j];
+                    result.bestMove = bestMoves[j];
 
                     if(result.score >= MATE_THRESHOLD){
                         result.score -= ply;
@@ -242,6 +246,7 @@ public class TranspositionTable {
                 if (flags[j] == UPPER && scores[j] <= alpha) {
                     result.status = ALPHA_CUTOFF;
                     result.score = scores[j];
+                    result.bestMove = bestMoves[j];
 
                     if(result.score >= MATE_THRESHOLD){
                         result.score -= ply;